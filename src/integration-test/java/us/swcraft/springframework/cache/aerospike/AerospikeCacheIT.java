@@ -21,6 +21,13 @@ import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+
 import javax.inject.Inject;
 
 import org.junit.jupiter.api.Assertions;
@@ -42,6 +49,7 @@ import us.swcraft.springframework.store.persistence.AerospikeTemplate;
 import us.swcraft.springframework.store.serialization.FSTSerializer;
 
 import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.Bin;
 import com.aerospike.client.Host;
 import com.aerospike.client.IAerospikeClient;
 import com.aerospike.client.policy.ClientPolicy;
@@ -55,6 +63,9 @@ public class AerospikeCacheIT {
     @Inject
     private AerospikeCache aerospikeCache;
 
+    @Inject
+    private AerospikeTemplate aerospikeTemplate;
+
     @BeforeEach
     public void prepare() {
         aerospikeCache.clear();
@@ -127,6 +138,469 @@ public class AerospikeCacheIT {
         assertThat(result2.get(), is(not("DEADBEED")));
     }
 
+    @Test
+    public void evictWhere_valueClass() {
+        aerospikeCache.put("A", "B");
+        aerospikeCache.put("C", 1L);
+        aerospikeCache.evictWhere(EvictionFilters.valueClass(String.class), true);
+        assertThat(aerospikeCache.get("A"), nullValue());
+        assertThat(aerospikeCache.get("C").get(), is(1L));
+    }
+
+    @Test
+    public void evictWhere_updatedBefore() {
+        aerospikeCache.put("A", "B");
+        aerospikeCache.evictWhere(EvictionFilters.updatedBefore(Instant.now().plusSeconds(1)), true);
+        assertThat(aerospikeCache.get("A"), nullValue());
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void evictWhere_chunkedValues() {
+        AerospikeCache chunked = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        chunked.setChunkSizeInBytes(1024);
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> chunked.evictWhere(EvictionFilters.valueClass(String.class)));
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void clear_versionedKeyspace() {
+        AerospikeCache versioned = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        versioned.setVersionedKeyspace(true);
+        versioned.setGenerationRefreshIntervalInMillis(0);
+        versioned.put("A", "B");
+        assertThat(versioned.get("A").get(), is("B"));
+
+        AerospikeCache otherNode = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        otherNode.setVersionedKeyspace(true);
+        otherNode.setGenerationRefreshIntervalInMillis(0);
+        assertThat(otherNode.get("A").get(), is("B"));
+
+        versioned.clear();
+        assertThat(versioned.get("A"), nullValue());
+        assertThat(otherNode.get("A"), nullValue());
+    }
+
+    @Test
+    public void replace_expectedVersion() {
+        assertThat(aerospikeCache.replace("A", 0, "B"), is(true));
+        assertThat(aerospikeCache.replace("A", 0, "C"), is(false));
+
+        VersionedValueWrapper current = aerospikeCache.getVersioned("A");
+        assertThat(current.get(), is("B"));
+        assertThat(aerospikeCache.replace("A", current.getVersion(), "D"), is(true));
+        assertThat(aerospikeCache.replace("A", current.getVersion(), "E"), is(false));
+        assertThat(aerospikeCache.get("A").get(), is("D"));
+    }
+
+    @Test
+    public void compute() {
+        Long result1 = aerospikeCache.compute("A", (Long v) -> v == null ? 1L : v + 1);
+        Long result2 = aerospikeCache.compute("A", (Long v) -> v == null ? 1L : v + 1);
+        assertThat(result1, is(1L));
+        assertThat(result2, is(2L));
+    }
+
+    @Test
+    public void compute_unreadableEntry() {
+        aerospikeTemplate.persist("A", new HashSet<>(Arrays.asList(
+                new Bin(AerospikeCache.CLASS_NAME_BIN, "com.example.Missing"),
+                new Bin(AerospikeCache.VALUE_BIN, new byte[] { 1, 2, 3 }))));
+        assertThat(aerospikeCache.getVersioned("A"), nullValue());
+
+        Long result = aerospikeCache.compute("A", (Long v) -> v == null ? 1L : v + 1);
+        assertThat(result, is(1L));
+        assertThat(aerospikeCache.get("A").get(), is(1L));
+    }
+
+    @Test
+    public void increment() {
+        assertThat(aerospikeCache.getCounter("A"), is(0L));
+        assertThat(aerospikeCache.increment("A", 5), is(5L));
+        assertThat(aerospikeCache.increment("A", -2), is(3L));
+        assertThat(aerospikeCache.getCounter("A"), is(3L));
+        assertThat(aerospikeCache.get("A").get(), is(3L));
+        assertThat(aerospikeCache.get("A", Long.class), is(3L));
+    }
+
+    @Test
+    public void increment_ttlResolver() {
+        AerospikeCache resolving = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        resolving.setTtlResolver((key, value, ttl) -> "short".equals(key) ? 60 : ttl);
+        resolving.increment("short", 1);
+        assertThat(aerospikeTemplate.fetch("short").getTimeToLive() <= 60, is(true));
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void mapValues_entries() {
+        AerospikeCache mapCache = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        mapCache.setMapValues(true);
+        HashMap<String, Object> flags = new HashMap<>();
+        flags.put("F1", true);
+        flags.put("F2", "on");
+        mapCache.put("A", flags);
+
+        assertThat(mapCache.getEntry("A", "F1"), is(true));
+        assertThat(mapCache.getEntry("A", "F3"), nullValue());
+        mapCache.putEntry("A", "F3", 3L);
+        assertThat(mapCache.getEntries("A", Arrays.asList("F2", "F3", "F4")).size(), is(2));
+        assertThat(mapCache.get("A", HashMap.class).size(), is(3));
+
+        mapCache.putEntry("B", "F1", false);
+        assertThat(mapCache.getEntry("B", "F1"), is(false));
+    }
+
+    @Test
+    public void mapValues_chunkedAndDeduplicatedMaps() {
+        // written by a node without map values
+        AerospikeCache serialized = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        serialized.setChunkSizeInBytes(1024);
+        serialized.setDedupThresholdInBytes(512);
+        AerospikeCache mapCache = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        mapCache.setMapValues(true);
+        mapCache.setChunkSizeInBytes(1024);
+        mapCache.setDedupThresholdInBytes(512);
+        HashMap<String, Object> small = new HashMap<>();
+        small.put("F1", String.join("", Collections.nCopies(100, "shared ")));
+        HashMap<String, Object> large = new HashMap<>();
+        large.put("F1", String.join("", Collections.nCopies(400, "chunked ")));
+        serialized.put("A", small);
+        serialized.put("B", large);
+        assertThat(aerospikeTemplate.fetch("A").getString("H"), notNullValue());
+        assertThat(aerospikeTemplate.fetch("B").getList("K"), notNullValue());
+
+        assertThat(mapCache.getEntry("A", "F1"), is(small.get("F1")));
+        assertThat(mapCache.getEntry("B", "F1"), is(large.get("F1")));
+        assertThat(mapCache.getEntry("B", "F2"), nullValue());
+        assertThat(mapCache.getEntries("B", Arrays.asList("F1", "F2")).size(), is(1));
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void mapValues_putEntryReplacesSerializedMap() {
+        AerospikeCache mapCache = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        mapCache.setMapValues(true);
+        aerospikeCache.put("A", new HashMap<>(Collections.singletonMap("F1", true)));
+        aerospikeCache.put("B", null);
+
+        mapCache.putEntry("A", "F2", "on");
+        assertThat(mapCache.getEntry("A", "F1"), is(true));
+        assertThat(mapCache.getEntry("A", "F2"), is("on"));
+        mapCache.putEntry("B", "F1", 1L);
+        assertThat(mapCache.getEntry("B", "F1"), is(1L));
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void packedBuckets() {
+        AerospikeCache packed = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        packed.setPackedBuckets(4);
+        for (int i = 0; i < 20; i++) {
+            packed.put("K" + i, "V" + i);
+        }
+        packed.put("N", null);
+        assertThat(packed.get("K7").get(), is("V7"));
+        assertThat(packed.get("K8", String.class), is("V8"));
+        assertThat(packed.get("N").get(), nullValue());
+        assertThat(packed.get("M"), nullValue());
+
+        packed.evict("K7");
+        assertThat(packed.get("K7"), nullValue());
+        packed.compactBuckets();
+        assertThat(packed.get("K9").get(), is("V9"));
+    }
+
+    @Test
+    public void packedBuckets_bucketTooBig() {
+        AerospikeCache packed = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        packed.setPackedBuckets(1);
+        packed.put("A", "B");
+        packed.put("C", "D");
+
+        packed.put("A", new byte[2 * 1024 * 1024]);
+        assertThat(packed.get("A"), nullValue());
+        assertThat(packed.get("C").get(), is("D"));
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void chunkedValue() {
+        AerospikeCache chunked = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        chunked.setChunkSizeInBytes(1024);
+        chunked.setMaxValueSizeInBytes(64 * 1024);
+        byte[] large = new byte[10 * 1024 + 7];
+        new Random(7).nextBytes(large);
+
+        chunked.put("A", large);
+        assertThat(Arrays.equals((byte[]) chunked.get("A").get(), large), is(true));
+        chunked.put("A", "small");
+        assertThat(chunked.get("A").get(), is("small"));
+
+        chunked.put("A", new byte[128 * 1024]);
+        assertThat(chunked.get("A"), nullValue());
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void chunkedValue_overwrite() {
+        AerospikeCache chunked = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        chunked.setChunkSizeInBytes(1024);
+        byte[] first = new byte[4 * 1024];
+        byte[] second = new byte[5 * 1024];
+        new Random(7).nextBytes(first);
+        new Random(11).nextBytes(second);
+
+        chunked.put("A", first);
+        String firstChunkId = (String) aerospikeTemplate.fetch("A").getList("K").get(0);
+        assertThat(aerospikeTemplate.hasKey("A#" + firstChunkId + "#0"), is(true));
+
+        chunked.put("A", second);
+        assertThat(Arrays.equals((byte[]) chunked.get("A").get(), second), is(true));
+        assertThat(aerospikeTemplate.hasKey("A#" + firstChunkId + "#0"), is(false));
+        assertThat(aerospikeTemplate.hasKey("A#" + firstChunkId + "#3"), is(false));
+        String secondChunkId = (String) aerospikeTemplate.fetch("A").getList("K").get(0);
+
+        chunked.put("A", "small");
+        assertThat(chunked.get("A").get(), is("small"));
+        assertThat(aerospikeTemplate.hasKey("A#" + secondChunkId + "#0"), is(false));
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void chunkedValue_readAfterTtl() throws InterruptedException {
+        AerospikeTemplate shortLived = new AerospikeTemplate();
+        shortLived.setAerospikeClient(aerospikeTemplate.getAerospikeClient());
+        shortLived.setNamespace("cache");
+        shortLived.setSetname("ITC");
+        shortLived.setExpiration(2);
+        shortLived.init();
+        AerospikeCache chunked = new AerospikeCache(shortLived, new FSTSerializer(StoreCompression.NONE));
+        chunked.setChunkSizeInBytes(1024);
+        byte[] large = new byte[4 * 1024];
+        new Random(7).nextBytes(large);
+
+        chunked.put("A", large);
+        // each read extends entry and chunks by another 2 seconds
+        for (int i = 0; i < 3; i++) {
+            Thread.sleep(1200);
+            assertThat(Arrays.equals((byte[]) chunked.get("A").get(), large), is(true));
+        }
+        assertThat(chunked.getStatistics().getMisses(), is(0L));
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void deduplicatedValue() {
+        AerospikeCache dedup = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        dedup.setDedupThresholdInBytes(64);
+        String shared = String.join("", Collections.nCopies(20, "shared profile "));
+
+        dedup.put("A", shared);
+        dedup.put("B", shared);
+        assertThat(dedup.get("A").get(), is(shared));
+
+        AerospikeCache otherNode = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        otherNode.setDedupThresholdInBytes(64);
+        assertThat(otherNode.get("B").get(), is(shared));
+
+        dedup.put("A", "small");
+        assertThat(otherNode.get("A").get(), is("small"));
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void deduplicatedValue_contentOutlivesEntries() {
+        AerospikeCache dedup = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        dedup.setDedupThresholdInBytes(64);
+        dedup.setTtlResolver((key, value, ttl) -> "short".equals(key) ? 60 : ttl);
+        String shared = String.join("", Collections.nCopies(20, "shared profile "));
+
+        dedup.put("long", shared);
+        dedup.put("short", shared);
+        String contentKey = "__content:" + aerospikeTemplate.fetch("long").getString("H");
+        assertThat(aerospikeTemplate.fetch("short").getTimeToLive() <= 60, is(true));
+        assertThat(aerospikeTemplate.fetch(contentKey).getTimeToLive() > 500, is(true));
+
+        AerospikeCache otherNode = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        otherNode.setDedupThresholdInBytes(64);
+        assertThat(otherNode.get("long").get(), is(shared));
+        assertThat(otherNode.getStatistics().getHits(), is(1L));
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void writeSuppression() {
+        AerospikeCache suppressing = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        suppressing.setWriteSuppression(true);
+        suppressing.put("A", "B");
+        VersionedValueWrapper written = suppressing.getVersioned("A");
+
+        suppressing.put("A", "B");
+        VersionedValueWrapper suppressed = suppressing.getVersioned("A");
+        assertThat(suppressed.get(), is("B"));
+
+        aerospikeCache.put("A", "C");
+        suppressing.put("A", "B");
+        assertThat(suppressing.get("A").get(), is("B"));
+        assertThat(suppressed.getVersion() > written.getVersion(), is(true));
+    }
+
+    @Test
+    public void ttlResolver_jitter() {
+        AerospikeCache resolving = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        resolving.setTtlResolver((key, value, ttl) -> "short".equals(key) ? 60 : ttl);
+        resolving.setTtlJitterPercent(10);
+        resolving.put("short", "A");
+        resolving.put("long", "B");
+
+        int shortTtl = aerospikeTemplate.fetch("short").getTimeToLive();
+        int longTtl = aerospikeTemplate.fetch("long").getTimeToLive();
+        assertThat(shortTtl <= 66, is(true));
+        assertThat(longTtl >= 530 && longTtl <= 660, is(true));
+    }
+
+    @Test
+    public void nearCache() {
+        AerospikeCache near = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        near.setNearCacheSize(100);
+        near.put("A", "B");
+        assertThat(near.get("A").get(), is("B"));
+        assertThat(near.get("A").get(), is("B"));
+        assertThat(near.getStatistics().getNearHits(), is(1L));
+
+        aerospikeCache.put("A", "C");
+        assertThat(near.get("A").get(), is("C"));
+        assertThat(near.getStatistics().getNearHits(), is(1L));
+        assertThat(near.get("A").get(), is("C"));
+        assertThat(near.getStatistics().getNearHits(), is(2L));
+    }
+
+    @Test
+    public void nearCache_invalidationLog() throws InterruptedException {
+        AerospikeCache node1 = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        node1.setNearCacheSize(100);
+        node1.setNearCacheInvalidationIntervalInMillis(50);
+        AerospikeCache node2 = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        node2.setNearCacheSize(100);
+        node2.setNearCacheInvalidationIntervalInMillis(50);
+
+        node1.put("A", "B");
+        assertThat(node1.get("A").get(), is("B"));
+        assertThat(node1.get("A").get(), is("B"));
+        assertThat(node1.getStatistics().getNearHits(), is(1L));
+
+        node2.put("A", "C");
+        Thread.sleep(100);
+        assertThat(node1.get("A").get(), is("C"));
+
+        node2.evict("A");
+        Thread.sleep(100);
+        assertThat(node1.get("A"), nullValue());
+    }
+
+    @Test
+    public void nearCache_invalidationLogKeptOnClear() throws InterruptedException {
+        AerospikeCache node1 = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        node1.setNearCacheSize(100);
+        node1.setNearCacheInvalidationIntervalInMillis(50);
+        AerospikeCache node2 = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        node2.setNearCacheSize(100);
+        node2.setNearCacheInvalidationIntervalInMillis(50);
+        node1.put("A", "B");
+        assertThat(node1.get("A").get(), is("B"));
+
+        node2.clear();
+        Thread.sleep(100);
+        assertThat(node1.get("A"), nullValue());
+    }
+
+    @Test
+    public void nearCache_invalidationLogExpiredEntry() throws InterruptedException {
+        AerospikeCache near = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        near.setNearCacheSize(100);
+        near.setNearCacheInvalidationIntervalInMillis(50);
+        near.setTtlResolver((key, value, ttl) -> "short".equals(key) ? 1 : ttl);
+        near.put("short", "A");
+        assertThat(near.get("short").get(), is("A"));
+        assertThat(near.get("short").get(), is("A"));
+        assertThat(near.getStatistics().getNearHits(), is(1L));
+
+        Thread.sleep(2100);
+        assertThat(near.get("short"), nullValue());
+    }
+
+    @Test
+    public void invalidationLog_withoutNearCache() {
+        // log records of other tests are kept on clear
+        long[] sequences = new long[16];
+        for (int shard = 0; shard < 16; shard++) {
+            sequences[shard] = aerospikeTemplate.getCounter("__invalidation__:" + shard, "S");
+        }
+        AerospikeCache noNear = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        noNear.setNearCacheInvalidationIntervalInMillis(50);
+        noNear.put("A", "B");
+        for (int shard = 0; shard < 16; shard++) {
+            assertThat(aerospikeTemplate.getCounter("__invalidation__:" + shard, "S"), is(sequences[shard]));
+        }
+    }
+
+    @Test
+    public void nativeValues() {
+        AerospikeCache natives = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        natives.setNativeValues(true);
+        natives.put("string", "B");
+        natives.put("long", 42L);
+        natives.put("int", 7);
+        natives.put("bytes", new byte[] { 1, 2, 3 });
+
+        assertThat(natives.get("string", String.class), is("B"));
+        assertThat(natives.get("long", Long.class), is(42L));
+        assertThat(natives.get("int", Integer.class), is(7));
+        assertThat(Arrays.equals((byte[]) natives.get("bytes").get(), new byte[] { 1, 2, 3 }), is(true));
+        assertThat(aerospikeTemplate.fetch("long").getString(AerospikeCache.CLASS_NAME_BIN), is("J"));
+        assertThat(aerospikeTemplate.fetch("long").getLong(AerospikeCache.VALUE_BIN), is(42L));
+    }
+
+    @Test
+    public void compressionDictionary() throws InterruptedException {
+        AerospikeCache compressed = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        compressed.setCompressionTrainingSamples(200);
+        compressed.setCompressionDictionarySizeInBytes(4096);
+        long dictionaryId = 0;
+        int last = 0;
+        // trained in background once 200 values are sampled
+        for (; dictionaryId == 0 && last < 1000; last++) {
+            compressed.put("K" + last, customer(last));
+            dictionaryId = aerospikeTemplate.fetch("K" + last).getLong("Z");
+            if (last >= 200) {
+                Thread.sleep(10);
+            }
+        }
+        assertThat(dictionaryId != 0, is(true));
+        assertThat(aerospikeTemplate.fetch("K0").getLong("Z"), is(0L));
+
+        compressed.retrainCompressionDictionary();
+        AerospikeCache otherNode = new AerospikeCache(aerospikeTemplate, new FSTSerializer(StoreCompression.NONE));
+        otherNode.setCompressionDictionarySizeInBytes(4096);
+        assertThat(((HashMap<?, ?>) otherNode.get("K" + (last - 1)).get()).get("city"), is("Nullam"));
+        assertThat(((HashMap<?, ?>) otherNode.get("K0").get()).get("id"), is(0));
+
+        otherNode.clear();
+        compressed.put("K1", customer(1));
+        assertThat(aerospikeTemplate.fetch("K1").getLong("Z"), is(dictionaryId));
+        assertThat(((HashMap<?, ?>) otherNode.get("K1").get()).get("id"), is(1));
+    }
+
+    private static HashMap<String, Object> customer(final int i) {
+        HashMap<String, Object> value = new HashMap<>();
+        value.put("id", i);
+        value.put("name", "customer-" + (i * 7919 % 1000));
+        value.put("city", "Nullam");
+        return value;
+    }
+
     @Configuration
     @PropertySource(value = "classpath:/application.properties")
     static class Config {
@@ -15,33 +15,258 @@
  */
 package us.swcraft.springframework.cache.aerospike;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.cache.Cache;
 import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 
+import us.swcraft.springframework.cache.aerospike.admission.AdmissionPolicy;
+import us.swcraft.springframework.cache.aerospike.ttl.Expirable;
+import us.swcraft.springframework.cache.aerospike.ttl.TtlPolicy;
+import us.swcraft.springframework.cache.aerospike.ttl.TtlResolver;
 import us.swcraft.springframework.store.persistence.AerospikeTemplate;
 import us.swcraft.springframework.store.serialization.SerializationException;
 import us.swcraft.springframework.store.serialization.Serializer;
 
+import com.aerospike.client.AerospikeException;
 import com.aerospike.client.Bin;
+import com.aerospike.client.Operation;
 import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.Value;
+import com.aerospike.client.cdt.MapOperation;
+import com.aerospike.client.cdt.MapOrder;
+import com.aerospike.client.cdt.MapPolicy;
+import com.aerospike.client.cdt.MapReturnType;
+import com.aerospike.client.cdt.MapWriteFlags;
+import com.aerospike.client.command.ParticleType;
+import com.aerospike.client.exp.Exp;
+import com.aerospike.client.exp.ExpOperation;
+import com.aerospike.client.exp.ExpWriteFlags;
+import com.aerospike.client.exp.Expression;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.hash.Hashing;
 
 @SuppressWarnings("rawtypes")
 public class AerospikeCache implements Cache {
 
     private static final Logger log = LoggerFactory.getLogger(AerospikeCache.class);
 
-    private static final String VALUE_BIN = "V";
-    private static final String CLASS_NAME_BIN = "C";
+    static final String VALUE_BIN = "V";
+    static final String CLASS_NAME_BIN = "C";
+
+    /**
+     * Marks internal records kept on cache clear, e.g. compression dictionaries.
+     */
+    static final String RETAINED_BIN = "Y";
+
+    private static final String COUNTER_CLASS_NAME = Long.class.getName();
+
+    private static final MapPolicy MAP_POLICY = new MapPolicy(MapOrder.KEY_ORDERED, MapWriteFlags.DEFAULT);
+
+    /**
+     * Matches missing entries and entries stored as native map.
+     */
+    private static final Expression NATIVE_MAP_FILTER = Exp.build(Exp.or(
+            Exp.not(Exp.binExists(CLASS_NAME_BIN)),
+            Exp.eq(Exp.binType(VALUE_BIN), Exp.val(ParticleType.MAP))));
+
+    private static final Expression ANY_RECORD = Exp.build(Exp.val(true));
+
+    private static final Expression NOT_RETAINED = Exp.build(Exp.not(Exp.binExists(RETAINED_BIN)));
+
+    private static final String GENERATION_KEY = "__generation__";
+    private static final String GENERATION_BIN = "G";
+
+    private static final String CHUNKS_BIN = "K";
+    private static final String CONTENT_HASH_BIN = "H";
+    private static final String PAYLOAD_HASH_BIN = "D";
+    private static final String DICTIONARY_BIN = "Z";
+
+    private static final String CONTENT_KEY_PREFIX = "__content:";
+
+    private static final String BUCKET_KEY_PREFIX = "__bucket:";
+    private static final String PACKED_BIN = "P";
 
     private final AerospikeTemplate template;
     private final Serializer serializer;
 
+    /**
+     * Versioned keyspace mode. Entry keys are prefixed with cache generation and {@link #clear()} only bumps the
+     * generation. Default is <code>false</code>.
+     */
+    private boolean versionedKeyspace;
+
+    /**
+     * Max age of locally cached generation before it is re-read from Aerospike. Bounds the time other nodes keep
+     * serving entries of a cleared generation.
+     */
+    private long generationRefreshIntervalInMillis = 1000;
+
+    /**
+     * Map values mode. Maps with string keys are stored as native Aerospike maps, so single entries can be read and
+     * written without transferring the whole map. Default is <code>false</code>.
+     */
+    private boolean mapValues;
+
+    /**
+     * Number of bucket records entries are packed into, <code>0</code> disables packed mode. In packed mode each
+     * entry lives in a native map inside a bucket record selected by key hash, which saves Aerospike primary index
+     * memory for caches with many small entries. A bucket holds about entries / buckets values and has to fit into
+     * namespace write block size, values not fitting are not cached. Default is <code>0</code>.
+     */
+    private int packedBuckets;
+
+    /**
+     * Interval between server-side removals of expired entries from bucket records in packed mode.
+     */
+    private long packedCompactionIntervalInSeconds = 300;
+
+    private final AtomicLong packedCompactedAt = new AtomicLong();
+
+    /**
+     * Serialized values larger than chunk size are split into chunk records referenced by a manifest record,
+     * <code>0</code> disables chunking. Should be below Aerospike namespace write block size. Default is
+     * <code>0</code>.
+     */
+    private int chunkSizeInBytes;
+
+    /**
+     * Serialized values larger than max value size are not cached, <code>0</code> means no limit. Default is
+     * <code>0</code>.
+     */
+    private int maxValueSizeInBytes;
+
+    /**
+     * Serialized values of dedup threshold size or larger are stored once per content in a record keyed by SHA-256
+     * of the payload, cache entries only reference the content. <code>0</code> disables deduplication. Default is
+     * <code>0</code>.
+     */
+    private int dedupThresholdInBytes;
+
+    /**
+     * Local cache of hot content blocks in dedup mode.
+     */
+    private com.google.common.cache.Cache<String, byte[]> contentCache = buildContentCache(16 * 1024 * 1024);
+
+    /**
+     * Write suppression mode. A hash of serialized value is stored next to it and writes of unchanged values are
+     * replaced with a TTL extension. Default is <code>false</code>.
+     */
+    private boolean writeSuppression;
+
+    /**
+     * Payload hashes recently written by this node in write suppression mode. Only used to pick the cheaper request
+     * first, the stored hash is always checked server-side.
+     */
+    private final com.google.common.cache.Cache<String, Long> writtenHashes = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .build();
+
+    /**
+     * Lazy deserialization mode. {@link #get(Object)} returns the serialized value which is deserialized on first
+     * access, so presence-only callers skip deserialization. Default is <code>false</code>.
+     */
+    private boolean lazyDeserialization;
+
+    /**
+     * Native values mode. Strings, byte arrays, boxed primitives and characters are stored as native bins without
+     * serialization. Default is <code>false</code>.
+     */
+    private boolean nativeValues;
+
+    /**
+     * Admission policy deciding which values are persisted. All values are persisted when not set.
+     */
+    private AdmissionPolicy admissionPolicy;
+
+    /**
+     * Policy assigning per-entry time to live on writes and reads. Cache time to live is used when not set. Not applied
+     * in packed bucket mode.
+     */
+    private TtlPolicy ttlPolicy;
+
+    /**
+     * Resolver of per-entry time to live on writes. Resolved time to live is not extended on reads. Not applied in
+     * packed bucket mode.
+     */
+    private TtlResolver ttlResolver;
+
+    /**
+     * Max random deviation of entry time to live in percent, spreads expiration of entries written in a burst. Default
+     * is <code>0</code>, no jitter.
+     */
+    private int ttlJitterPercent;
+
+    private final AerospikeCacheStatistics statistics = new AerospikeCacheStatistics();
+
+    /**
+     * Max number of optimistic update attempts in {@link #compute(Object, Function)}.
+     */
+    private int maxCasAttempts = 16;
+
+    /**
+     * Near cache of recently read values validated against stored entry generation on each read. Disabled when
+     * <code>null</code>, not used in packed bucket mode.
+     */
+    private com.google.common.cache.Cache<String, NearEntry> nearCache;
+
+    /**
+     * Near cache invalidation log. When set, near cached values are served without validation reads and dropped on
+     * changes logged by any node.
+     */
+    private InvalidationLog invalidationLog;
+
+    /**
+     * Interval of near cache invalidation log polls, bounds near cache staleness. Default is <code>0</code>, near cached
+     * values are validated on each read instead.
+     */
+    private int nearCacheInvalidationIntervalInMillis;
+
+    /**
+     * Number of slot records in near cache invalidation log.
+     */
+    private int invalidationLogSize = 4096;
+
+    /**
+     * Trained compression dictionaries, serialized values are not compressed by the cache when <code>null</code>.
+     */
+    private CompressionDictionaries compressionDictionaries;
+
+    /**
+     * Max size of trained compression dictionary. Default is <code>0</code>, no dictionary compression.
+     */
+    private int compressionDictionarySizeInBytes;
+
+    /**
+     * Number of values sampled to train compression dictionary.
+     */
+    private int compressionTrainingSamples = 1000;
+
+    private volatile long generation;
+    private volatile long generationRefreshedAt;
+
     public AerospikeCache(final AerospikeTemplate template, final Serializer serializer) {
         this.template = template;
         this.serializer = serializer;
@@ -69,7 +294,16 @@ public class AerospikeCache implements Cache {
     @Override
     public void clear() {
         log.trace("Clear cache: {}", template.getSetname());
-        template.deleteAll();
+        if (versionedKeyspace) {
+            final long nextGeneration = template.increment(GENERATION_KEY, GENERATION_BIN, 1, -1);
+            updateGeneration(nextGeneration);
+            log.trace("Cache {} generation bumped to {}", template.getSetname(), nextGeneration);
+        } else {
+            // dictionaries of all nodes are kept, entries compressed with them may be written concurrently, and so is
+            // the invalidation log, whose sequences must not restart behind node cursors
+            template.deleteAll(NOT_RETAINED);
+        }
+        invalidateNear(InvalidationLog.ALL_KEYS);
     }
 
     /**
@@ -78,58 +312,272 @@ public class AerospikeCache implements Cache {
     @Override
     public void evict(final Object key) {
         log.trace("Evicting {} from cache: {}", key, template.getSetname());
-        template.delete(key.toString());
+        if (packedBuckets > 0) {
+            evictPacked(key);
+            return;
+        }
+        final String k = recordKey(key);
+        if (chunkSizeInBytes > 0) {
+            deleteChunks(k, fetchManifest(k));
+        }
+        template.delete(k);
+        invalidateNear(k);
     }
     
+    /**
+     * Evicts all entries matching the filter expression. Entries are removed server-side by a background operation,
+     * cached values are not transferred to the client. Returns once the operation has been started, so matching
+     * entries may still be read until it completes.
+     * 
+     * @param filter
+     *            filter expression, see {@link EvictionFilters} for common filters
+     */
+    public void evictWhere(final Expression filter) {
+        evictWhere(filter, false);
+    }
+
+    /**
+     * Evicts all entries matching the filter expression by a server-side background operation. Not supported in
+     * packed bucket, chunking and deduplication modes, where entry values are stored outside of entry records.
+     * 
+     * @param filter
+     *            filter expression, see {@link EvictionFilters} for common filters
+     * @param waitTillComplete
+     *            <code>true</code> to return once all matching entries are removed
+     */
+    public void evictWhere(final Expression filter, final boolean waitTillComplete) {
+        assertNotPacked();
+        Assert.state(chunkSizeInBytes == 0 && dedupThresholdInBytes == 0,
+                "evictWhere is not supported with chunked or deduplicated values in cache " + getName());
+        log.trace("Evicting entries matching {} from cache: {}", filter, template.getSetname());
+        // cache entries only, service records like generation do not have class name bin
+        template.deleteWhere(Exp.build(Exp.and(Exp.binExists(CLASS_NAME_BIN), Exp.expr(filter))), waitTillComplete);
+        invalidateNear(InvalidationLog.ALL_KEYS);
+    }
+
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("unchecked")
     @Override
     public void put(final Object key, final Object value) {
-        final Set<Bin> binsToSave = new HashSet<>(2, 1);
-        if (value != null) {
-            final String className = value.getClass().getName();
-            binsToSave.add(new Bin(CLASS_NAME_BIN, className));
-            binsToSave.add(new Bin(VALUE_BIN, serializer.serialize(value)));
+        if (packedBuckets > 0) {
+            if (admit(key, -1)) {
+                putPacked(key, value);
+            }
+            return;
+        }
+        final String k = recordKey(key);
+        // chunks are deleted once the entry no longer references them, concurrent overwrites may leave chunks of one
+        // of them to TTL
+        final List<?> previousChunks = chunkSizeInBytes > 0 ? fetchManifest(k) : null;
+        if (persistEntry(key, k, value)) {
+            invalidateNear(k);
+            deleteChunks(k, previousChunks);
+        }
+    }
+
+    /**
+     * Writes the entry record, the value may be chunked, deduplicated or stored as is depending on the mode.
+     * 
+     * @return <code>true</code> if entry record has been written, <code>false</code> if write of unchanged value has
+     *         been suppressed or entry has been evicted instead
+     */
+    private boolean persistEntry(final Object key, final String k, final Object value) {
+        final Set<Bin> binsToSave;
+        if (value != null
+                && (chunkSizeInBytes > 0 || maxValueSizeInBytes > 0 || dedupThresholdInBytes > 0 || writeSuppression
+                        || admissionPolicy != null || compressionDictionaries != null)
+                && !isNativeMapCandidate(value) && !isNativeCandidate(value)) {
+            final byte[] serialized = serialize(value);
+            final CompressionDictionaries.Dictionary dictionary = compressionDictionary(serialized);
+            final byte[] payload = dictionary == null ? serialized : dictionary.compress(serialized);
+            final long dictionaryId = dictionary == null ? 0 : dictionary.getId();
+            if (maxValueSizeInBytes > 0 && payload.length > maxValueSizeInBytes) {
+                log.debug("Value {} of {} bytes exceeds max value size, not cached in: {}", k, payload.length,
+                        template.getSetname());
+                // do not leave previous value behind
+                evict(key);
+                return false;
+            }
+            if (!admit(key, payload.length)) {
+                return false;
+            }
+            final int expiration = expiration(key, value);
+            if (chunkSizeInBytes > 0 && payload.length > chunkSizeInBytes) {
+                putChunked(k, value.getClass().getName(), payload, dictionaryId, expiration);
+                return true;
+            }
+            if (dedupThresholdInBytes > 0 && payload.length >= dedupThresholdInBytes) {
+                putDeduplicated(k, value.getClass().getName(), payload, dictionaryId, expiration);
+                return true;
+            }
+            if (writeSuppression) {
+                final long hash = payloadHash(payload);
+                return putUnlessUnchanged(k, toBins(value.getClass().getName(), payload, hash, dictionaryId), hash,
+                        expiration);
+            }
+            binsToSave = toBins(value.getClass().getName(), payload, 0, dictionaryId);
         } else {
-            binsToSave.add(new Bin(CLASS_NAME_BIN, "NIL"));
-            binsToSave.add(new Bin(VALUE_BIN, "NIL"));
+            if (!admit(key, -1)) {
+                return false;
+            }
+            binsToSave = toBins(value);
         }
         log.trace("Persisting {}={} in cache: {}", key, binsToSave, template.getSetname());
-        template.persist(key.toString(), binsToSave);
+        template.persist(k, binsToSave, expiration(key, value));
+        return true;
     }
 
     /**
      * {@inheritDoc}
      */
-    @SuppressWarnings("unchecked")
     @Override
     public ValueWrapper get(final Object key) {
-        final String k = key.toString();
+        recordAccess(key);
+        if (packedBuckets > 0) {
+            return getPacked(key);
+        }
+        final String k = recordKey(key);
+        if (nearCache != null) {
+            final ValueWrapper near = getNear(key, k);
+            if (near != null) {
+                return near;
+            }
+        }
+        final long invalidationCursor = invalidationLog == null ? 0 : invalidationLog.cursor();
         final Record record = template.fetch(k);
         if (record == null) {
             log.trace("Not found: {}", k);
+            statistics.miss();
             return null;
-        } else {
+        }
+        try {
+            final ValueWrapper wrapper;
+            final Class<?> valueType;
             final String className = record.getString(CLASS_NAME_BIN);
-            if ("NIL".equals(className)) {
-                // null-value stored
-                log.trace("Got: {}=null", k);
-                template.touch(k);
-                return new SimpleValueWrapper(null);
+            final byte[] payload = lazyDeserialization && !"NIL".equals(className)
+                    && !NativeValues.isMarker(className) ? toPayload(k, record) : null;
+            if (payload != null) {
+                valueType = Class.forName(className);
+                log.trace("Got: {} of {} bytes", k, payload.length);
+                wrapper = new LazyValueWrapper(payload, valueType, serializer);
+            } else {
+                final Object value = toValue(k, record);
+                log.trace("Got: {}={}", k, value);
+                valueType = value == null ? null : value.getClass();
+                wrapper = new SimpleValueWrapper(value);
             }
-            final byte[] binaryContent = (byte[]) record.getValue(VALUE_BIN);
-            try {
-                final Object value = serializer.deserialize(binaryContent, Class.forName(className));
-                log.trace("Got: {}={}", key, value);
-                template.touch(k);
-                return new SimpleValueWrapper(value);
-            } catch (SerializationException | ClassNotFoundException e) {
-                log.warn("Class {} deserialization issue: {}", className, e.getMessage());
-                log.trace("", e);
-                return null;
+            statistics.hit();
+            final String contentHash = record.getString(CONTENT_HASH_BIN);
+            final List<?> chunks = record.getList(CHUNKS_BIN);
+            final boolean touched = touch(key, k, valueType, contentHash, chunks);
+            // value read before a concurrent invalidation is not near cached
+            if (nearCache != null && (invalidationLog == null || invalidationLog.cursor() == invalidationCursor)) {
+                nearCache.put(k, new NearEntry(touched ? record.generation + 1 : record.generation,
+                        expiresAt(record), wrapper, valueType, contentHash, chunks));
+            }
+            return wrapper;
+        } catch (SerializationException | ClassNotFoundException e) {
+            log.warn("Class {} deserialization issue: {}", record.getString(CLASS_NAME_BIN), e.getMessage());
+            log.trace("", e);
+            // unreadable entry is reported as missing
+            statistics.miss();
+            return null;
+        }
+    }
+
+    /**
+     * Returns the value together with its version. The version is Aerospike record generation and can be passed to
+     * {@link #replace(Object, int, Object)}. Unlike {@link #get(Object)} the entry is not touched, so its version is
+     * not changed by the read. Any write to the entry changes its version, including the TTL extension done by
+     * {@link #get(Object)}.
+     * 
+     * @param key
+     *            the key whose associated value is to be returned
+     * @return versioned value or <code>null</code> if entry is missing or can't be deserialized
+     */
+    public VersionedValueWrapper getVersioned(final Object key) {
+        assertNotPacked();
+        return getVersioned(recordKey(key), false);
+    }
+
+    /**
+     * Replaces the value only if the entry still has expected version. The value is stored in the entry record with
+     * the same TTL and compression as by {@link #put(Object, Object)}, it is not chunked or deduplicated.
+     * 
+     * @param key
+     *            the key with which the specified value is to be associated
+     * @param expectedVersion
+     *            version returned by {@link #getVersioned(Object)}, <code>0</code> if entry should be absent
+     * @param value
+     *            the value to be associated with the specified key
+     * @return <code>true</code> if value has been replaced, <code>false</code> if entry version has changed
+     */
+    public boolean replace(final Object key, final int expectedVersion, final Object value) {
+        assertNotPacked();
+        final Set<Bin> binsToSave = toEntryBins(value);
+        log.trace("Replacing {}={} version {} in cache: {}", key, binsToSave, expectedVersion, template.getSetname());
+        final String k = recordKey(key);
+        final Record previous = chunkSizeInBytes > 0 && expectedVersion != 0 ? template.fetch(k, CHUNKS_BIN) : null;
+        if (template.persistIfGeneration(k, binsToSave, expectedVersion, expiration(key, value))) {
+            invalidateNear(k);
+            if (previous != null && previous.generation == expectedVersion) {
+                // replaced record version has referenced these chunks
+                deleteChunks(k, previous.getList(CHUNKS_BIN));
             }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Atomically computes new value from the current one with optimistic locking. The function is re-applied if the
+     * entry has been changed concurrently, so it should be free of side effects. Reads of the entry by
+     * {@link #get(Object)} extend its TTL and so also cause re-application. An entry which can't be deserialized is
+     * treated as missing and replaced.
+     * 
+     * @param key
+     *            the key with which the computed value is to be associated
+     * @param remappingFunction
+     *            builds new value from the current one, current value is <code>null</code> if entry is missing
+     * @return computed value
+     * @throws IllegalStateException
+     *             if value has not been updated in {@link #setMaxCasAttempts(int) max attempts}
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T compute(final Object key, final Function<? super T, ? extends T> remappingFunction) {
+        for (int attempt = 1; attempt <= maxCasAttempts; attempt++) {
+            final VersionedValueWrapper current = getVersioned(recordKey(key), true);
+            final T currentValue = current == null ? null : (T) current.get();
+            final int version = current == null ? 0 : current.getVersion();
+            final T newValue = remappingFunction.apply(currentValue);
+            if (replace(key, version, newValue)) {
+                return newValue;
+            }
+            log.trace("Cache entry {} version {} conflict, attempt {}", key, version, attempt);
+        }
+        throw new IllegalStateException("cache entry '" + key + "' has not been updated in " + maxCasAttempts
+                + " attempts");
+    }
+
+    /**
+     * Reads the entry with its version, an entry which can't be deserialized is either reported as missing or as
+     * holding <code>null</code> value with its actual version.
+     */
+    private VersionedValueWrapper getVersioned(final String k, final boolean unreadableAsNull) {
+        final Record record = template.fetch(k);
+        if (record == null) {
+            log.trace("Not found: {}", k);
+            return null;
+        }
+        try {
+            final Object value = toValue(k, record);
+            log.trace("Got: {}={} version {}", k, value, record.generation);
+            return new VersionedValueWrapper(value, record.generation);
+        } catch (SerializationException | ClassNotFoundException e) {
+            log.warn("Class {} deserialization issue: {}", record.getString(CLASS_NAME_BIN), e.getMessage());
+            log.trace("", e);
+            return unreadableAsNull ? new VersionedValueWrapper(null, record.generation) : null;
         }
     }
 
@@ -139,33 +587,51 @@ public class AerospikeCache implements Cache {
     @SuppressWarnings("unchecked")
     @Override
     public <T> T get(final Object key, final Class<T> type) {
-        final String k = key.toString();
+        if (packedBuckets > 0 || nearCache != null) {
+            final ValueWrapper vw = get(key);
+            if (vw == null || vw.get() == null) {
+                return null;
+            }
+            if (!type.isInstance(vw.get())) {
+                throw new IllegalStateException("cache entry '" + key + "' has been found but failed to match '"
+                        + type + "' type");
+            }
+            return (T) vw.get();
+        }
+        recordAccess(key);
+        final String k = recordKey(key);
         final Record record = template.fetch(k);
         if (record == null) {
             log.trace("Not found: {}", k);
+            statistics.miss();
             return null;
         }
 
         final String className = record.getString(CLASS_NAME_BIN);
         if (className == null) {
             log.trace("Got: {}=null", k);
-            template.touch(k);
+            statistics.hit();
+            touch(key, k, null, null, null);
             return null;
         }
 
         try {
-            if (type.isAssignableFrom(Class.forName(className))) {
-                final Object value = serializer.deserialize((byte[])record.getValue(VALUE_BIN), type);
+            if (type.isAssignableFrom(NativeValues.type(className))) {
+                final Object value = toValue(k, record);
                 log.trace("Got: {}={}", k, value);
-                template.touch(k);
+                statistics.hit();
+                touch(key, k, value == null ? null : value.getClass(), record.getString(CONTENT_HASH_BIN),
+                        record.getList(CHUNKS_BIN));
                 return (T) value;
             } else {
+                statistics.hit();
                 throw new IllegalStateException("cache entry '" + key + "' has been found but failed to match '" + type
                         + "' type");
             }
         } catch (SerializationException | ClassNotFoundException e) {
             log.warn("Class {} deserialization issue: {}", className, e.getMessage());
             log.trace("", e);
+            statistics.miss();
             return null;
         }
     }
@@ -181,7 +647,11 @@ public class AerospikeCache implements Cache {
         final ValueWrapper vw = get(key);
         if (vw == null) {
             try {
+                final long started = System.nanoTime();
                 final T createdValue = valueLoader.call();
+                if (ttlPolicy != null) {
+                    ttlPolicy.recordLoad(key, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+                }
                 put(key, createdValue);
                 return createdValue;
             } catch (Exception e) {
@@ -208,9 +678,1157 @@ public class AerospikeCache implements Cache {
         }
     }
 
-    @Override
-    public String toString() {
-        return "AerospikeCache [name=" + getName() + "]";
+    /**
+     * Atomically adds delta to the counter stored under the key and returns the new value. The counter is kept in a
+     * native integer bin and updated server-side in a single request, entry TTL is applied on each increment as on
+     * {@link #put(Object, Object)}, with <code>null</code> value passed to TTL resolver. Counter entries must be
+     * updated with this method only, an entry written by {@link #put(Object, Object)} can't be incremented.
+     * 
+     * @param key
+     *            the counter key
+     * @param delta
+     *            value to add, may be negative
+     * @return counter value after increment
+     */
+    public long increment(final Object key, final long delta) {
+        assertNotPacked();
+        final String k = recordKey(key);
+        log.trace("Incrementing {} by {} in cache: {}", k, delta, template.getSetname());
+        final Record record = template.operate(k, expiration(key, null),
+                Operation.put(new Bin(CLASS_NAME_BIN, COUNTER_CLASS_NAME)),
+                Operation.add(new Bin(VALUE_BIN, delta)),
+                Operation.get(VALUE_BIN));
+        invalidateNear(k);
+        return record.getLong(VALUE_BIN);
+    }
+
+    /**
+     * Returns the counter value. The entry is not touched.
+     * 
+     * @param key
+     *            the counter key
+     * @return counter value or <code>0</code> if counter is missing
+     */
+    public long getCounter(final Object key) {
+        assertNotPacked();
+        return template.getCounter(recordKey(key), VALUE_BIN);
+    }
+
+    /**
+     * Returns a single entry of the map stored under the key. In map values mode only the requested entry is
+     * transferred and deserialized.
+     * 
+     * @param key
+     *            the key whose associated map is to be read
+     * @param mapKey
+     *            map entry key
+     * @return map entry value or <code>null</code> if cache entry or map entry is missing
+     */
+    public Object getEntry(final Object key, final String mapKey) {
+        assertNotPacked();
+        final String k = recordKey(key);
+        try {
+            final Record record = template.operate(k, template.getExpiration(),
+                    MapOperation.getByKey(VALUE_BIN, Value.get(mapKey), MapReturnType.VALUE),
+                    Operation.get(CHUNKS_BIN), Operation.get(CONTENT_HASH_BIN));
+            if (record != null && isStoredOutside(record)) {
+                final Map<?, ?> map = getMap(key);
+                return map == null ? null : map.get(mapKey);
+            }
+            if (record == null || record.getValue(VALUE_BIN) == null) {
+                log.trace("Not found: {}[{}]", k, mapKey);
+                return null;
+            }
+            final Object value = fromEntryPayload(record.getList(VALUE_BIN));
+            log.trace("Got: {}[{}]={}", k, mapKey, value);
+            return value;
+        } catch (AerospikeException e) {
+            if (e.getResultCode() != ResultCode.BIN_TYPE_ERROR) {
+                throw e;
+            }
+            // entry has not been stored as native map
+            final Map<?, ?> map = getMap(key);
+            return map == null ? null : map.get(mapKey);
+        }
+    }
+
+    /**
+     * Returns entries of the map stored under the key. In map values mode only the requested entries are transferred
+     * and deserialized.
+     * 
+     * @param key
+     *            the key whose associated map is to be read
+     * @param mapKeys
+     *            map entry keys
+     * @return found map entries, empty if cache entry is missing
+     */
+    public Map<String, Object> getEntries(final Object key, final Collection<String> mapKeys) {
+        assertNotPacked();
+        final String k = recordKey(key);
+        final Map<String, Object> result = new HashMap<>();
+        try {
+            final List<Value> keys = new ArrayList<>(mapKeys.size());
+            for (String mapKey : mapKeys) {
+                keys.add(Value.get(mapKey));
+            }
+            final Record record = template.operate(k, template.getExpiration(),
+                    MapOperation.getByKeyList(VALUE_BIN, keys, MapReturnType.KEY_VALUE),
+                    Operation.get(CHUNKS_BIN), Operation.get(CONTENT_HASH_BIN));
+            if (record != null && isStoredOutside(record)) {
+                putEntries(getMap(key), mapKeys, result);
+                return result;
+            }
+            if (record == null || record.getValue(VALUE_BIN) == null) {
+                log.trace("Not found: {}", k);
+                return result;
+            }
+            for (Object item : record.getList(VALUE_BIN)) {
+                final Map.Entry<?, ?> entry = (Map.Entry<?, ?>) item;
+                result.put((String) entry.getKey(), fromEntryPayload((List<?>) entry.getValue()));
+            }
+        } catch (AerospikeException e) {
+            if (e.getResultCode() != ResultCode.BIN_TYPE_ERROR) {
+                throw e;
+            }
+            // entry has not been stored as native map
+            putEntries(getMap(key), mapKeys, result);
+        }
+        log.trace("Got: {}={}", k, result);
+        return result;
+    }
+
+    /**
+     * Chunked and deduplicated maps are stored serialized outside of the entry record, without native map bin.
+     */
+    private static boolean isStoredOutside(final Record record) {
+        return record.getValue(CHUNKS_BIN) != null || record.getValue(CONTENT_HASH_BIN) != null;
+    }
+
+    private static void putEntries(final Map<?, ?> map, final Collection<String> mapKeys,
+            final Map<String, Object> result) {
+        if (map != null) {
+            for (String mapKey : mapKeys) {
+                if (map.containsKey(mapKey)) {
+                    result.put(mapKey, map.get(mapKey));
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts a single entry into the map stored under the key. In map values mode only the entry is transferred and
+     * the map is created if missing. Otherwise, or if the map has not been stored as native map, the whole map is
+     * read, updated and written back.
+     * 
+     * @param key
+     *            the key whose associated map is to be updated
+     * @param mapKey
+     *            map entry key
+     * @param value
+     *            map entry value
+     */
+    @SuppressWarnings("unchecked")
+    public void putEntry(final Object key, final String mapKey, final Object value) {
+        assertNotPacked();
+        final String k = recordKey(key);
+        if (mapValues) {
+            log.trace("Persisting {}[{}]={} in cache: {}", k, mapKey, value, template.getSetname());
+            final Record record = template.operate(k, NATIVE_MAP_FILTER, expiration(key, value),
+                    ExpOperation.write(CLASS_NAME_BIN, Exp.build(Exp.val(HashMap.class.getName())),
+                            ExpWriteFlags.CREATE_ONLY | ExpWriteFlags.POLICY_NO_FAIL),
+                    MapOperation.put(MAP_POLICY, VALUE_BIN, Value.get(mapKey), Value.get(toEntryPayload(value))));
+            if (record != null) {
+                invalidateNear(k);
+                return;
+            }
+            // entry has been stored in another format, it is replaced by the updated map
+            log.trace("Entry {} is not a native map, replacing it in cache: {}", k, template.getSetname());
+        }
+        final Map<String, Object> map = (Map<String, Object>) getMap(key);
+        final Map<String, Object> updated = map == null ? new HashMap<String, Object>() : map;
+        updated.put(mapKey, value);
+        put(key, updated);
+    }
+
+    /**
+     * Starts server-side removal of expired entries from all bucket records in packed mode. Compaction is also
+     * started periodically on writes, see {@link #setPackedCompactionIntervalInSeconds(long)}.
+     */
+    public void compactBuckets() {
+        final long now = System.currentTimeMillis();
+        packedCompactedAt.set(now);
+        log.trace("Compacting buckets of cache: {}", template.getSetname());
+        // packed entry is a list starting with expiration timestamp, so entries less than [now] are expired
+        template.operateAll(Exp.build(Exp.binExists(PACKED_BIN)), MapOperation.removeByValueRange(PACKED_BIN, null,
+                Value.get(Collections.singletonList(now)), MapReturnType.NONE));
+    }
+
+    private void recordAccess(final Object key) {
+        if (admissionPolicy != null) {
+            admissionPolicy.recordAccess(key);
+        }
+        if (ttlPolicy != null) {
+            ttlPolicy.recordAccess(key);
+        }
+    }
+
+    /**
+     * Returns expiration of the entry in seconds.
+     */
+    private int expiration(final Object key, final Object value) {
+        int ttl = ttlPolicy == null ? template.getExpiration() : ttlPolicy.timeToLive(key, template.getExpiration());
+        if (value instanceof Expirable) {
+            ttl = ((Expirable) value).getTimeToLiveInSeconds();
+        }
+        if (ttlResolver != null) {
+            ttl = ttlResolver.timeToLive(key, value, ttl);
+        }
+        if (ttlJitterPercent > 0 && ttl > 0) {
+            // long arithmetic, so large TTLs do not overflow
+            final long deviation = (long) ttl * ttlJitterPercent / 100;
+            ttl = (int) Math.min(Integer.MAX_VALUE,
+                    Math.max(1, ttl + ThreadLocalRandom.current().nextLong(-deviation, deviation + 1)));
+        }
+        return ttl;
+    }
+
+    /**
+     * Extends entry TTL on read, unless entry TTL has been resolved on write. TTL of deduplicated content and of
+     * chunks is extended together with the entry one, entry with missing chunks is not extended.
+     * 
+     * @return <code>true</code> if entry has been touched, which increments its generation
+     */
+    private boolean touch(final Object key, final String k, final Class<?> valueType, final String contentHash,
+            final List<?> chunks) {
+        if (ttlResolver != null || (valueType != null && Expirable.class.isAssignableFrom(valueType))) {
+            return false;
+        }
+        if (ttlPolicy == null && ttlJitterPercent == 0 && contentHash == null && chunks == null) {
+            template.touch(k);
+        } else {
+            final int expiration = expiration(key, null);
+            if (chunks != null && !touchChunks(k, chunks, expiration)) {
+                return false;
+            }
+            template.touch(k, expiration);
+            if (contentHash != null && !touchContent(CONTENT_KEY_PREFIX + contentHash, expiration)) {
+                log.debug("Content {} of {} is missing in cache: {}", contentHash, k, template.getSetname());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Drops near cached value of the entry here and, via invalidation log, on other nodes. Called once the entry has
+     * been changed, failed append does not fail the change.
+     */
+    private void invalidateNear(final String k) {
+        if (nearCache != null) {
+            if (InvalidationLog.ALL_KEYS.equals(k)) {
+                nearCache.invalidateAll();
+            } else {
+                nearCache.invalidate(k);
+            }
+        }
+        if (invalidationLog != null) {
+            try {
+                invalidationLog.append(k);
+            } catch (AerospikeException e) {
+                log.warn("Cache {} invalidation of {} not logged, other nodes may serve it from near cache: {}",
+                        template.getSetname(), k, e.getMessage());
+                log.trace("", e);
+            }
+        }
+    }
+
+    /**
+     * Returns near cached value if its generation still matches the stored entry one. Only entry metadata is read.
+     * With invalidation log near cached value is served without reads.
+     */
+    private ValueWrapper getNear(final Object key, final String k) {
+        if (invalidationLog != null) {
+            invalidationLog.pollIfDue(nearCache);
+        }
+        final NearEntry near = nearCache.getIfPresent(k);
+        if (near == null) {
+            return null;
+        }
+        if (near.expiresAt <= System.currentTimeMillis()) {
+            // expired entries are not logged, as TTL may be shorter than cache one
+            log.trace("Near cached {} has expired", k);
+            nearCache.invalidate(k);
+            return null;
+        }
+        if (invalidationLog != null) {
+            // kept fresh by invalidation log within poll interval
+            log.trace("Got near cached: {}", k);
+            statistics.hit();
+            statistics.nearHit();
+            return near.wrapper;
+        }
+        final Record header = template.fetchHeader(k);
+        if (header == null || header.generation != near.generation) {
+            log.trace("Near cached {} is stale", k);
+            nearCache.invalidate(k);
+            return null;
+        }
+        log.trace("Got near cached: {}", k);
+        statistics.hit();
+        statistics.nearHit();
+        if (touch(key, k, near.valueType, near.contentHash, near.chunks)) {
+            // any other write in between makes the generation mismatch on next read
+            nearCache.put(k, new NearEntry(near.generation + 1, expiresAt(header), near.wrapper, near.valueType,
+                    near.contentHash, near.chunks));
+        }
+        return near.wrapper;
+    }
+
+    /**
+     * Checks the value against admission policy. Rejected value is not persisted and previous value of the key, if
+     * any, is evicted, so it does not outlive the update.
+     */
+    private boolean admit(final Object key, final int serializedSize) {
+        if (admissionPolicy != null && !admissionPolicy.admit(key, serializedSize)) {
+            log.trace("Value {} not admitted in cache: {}", key, template.getSetname());
+            statistics.admissionRejection();
+            evictPrevious(key);
+            return false;
+        }
+        statistics.put();
+        return true;
+    }
+
+    /**
+     * Evicts the entry only if it exists. Existence is checked with a read, so keys which have never been cached do
+     * not cost a replicated delete.
+     */
+    private void evictPrevious(final Object key) {
+        final boolean present;
+        if (packedBuckets > 0) {
+            final String k = key.toString();
+            final Record record = template.operate(bucketKey(k), template.getExpiration(),
+                    MapOperation.getByKey(PACKED_BIN, Value.get(k), MapReturnType.COUNT));
+            present = record != null && record.getLong(PACKED_BIN) > 0;
+        } else {
+            present = template.hasKey(recordKey(key));
+        }
+        if (present) {
+            evict(key);
+        }
+    }
+
+    private void putPacked(final Object key, final Object value) {
+        final String k = key.toString();
+        final int ttl = template.getExpiration();
+        final List<Object> payload = new ArrayList<>(3);
+        payload.add(ttl > 0 ? System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttl) : Long.MAX_VALUE);
+        payload.addAll(toEntryPayload(value));
+        log.trace("Persisting packed {}={} in cache: {}", k, value, template.getSetname());
+        try {
+            template.operate(bucketKey(k), ttl,
+                    MapOperation.put(MAP_POLICY, PACKED_BIN, Value.get(k), Value.get(payload)));
+        } catch (AerospikeException e) {
+            if (e.getResultCode() != ResultCode.RECORD_TOO_BIG) {
+                throw e;
+            }
+            log.warn("Bucket of {} exceeds write block size, value not cached in: {}", k, template.getSetname());
+            // do not leave previous value behind
+            evictPacked(key);
+        }
+        compactBucketsIfDue();
+    }
+
+    private ValueWrapper getPacked(final Object key) {
+        final String k = key.toString();
+        final Record record = template.operate(bucketKey(k), template.getExpiration(),
+                MapOperation.getByKey(PACKED_BIN, Value.get(k), MapReturnType.VALUE));
+        if (record == null || record.getValue(PACKED_BIN) == null) {
+            log.trace("Not found: {}", k);
+            statistics.miss();
+            return null;
+        }
+        final List<?> payload = record.getList(PACKED_BIN);
+        if ((Long) payload.get(0) < System.currentTimeMillis()) {
+            log.trace("Expired: {}", k);
+            statistics.miss();
+            return null;
+        }
+        try {
+            final Object value = fromEntryPayload(payload.subList(1, payload.size()));
+            log.trace("Got: {}={}", k, value);
+            statistics.hit();
+            return new SimpleValueWrapper(value);
+        } catch (SerializationException e) {
+            log.warn("Class {} deserialization issue: {}", payload.get(1), e.getMessage());
+            log.trace("", e);
+            // unreadable entry is reported as missing
+            statistics.miss();
+            return null;
+        }
+    }
+
+    private void evictPacked(final Object key) {
+        final String k = key.toString();
+        try {
+            template.operate(bucketKey(k), template.getExpiration(),
+                    MapOperation.removeByKey(PACKED_BIN, Value.get(k), MapReturnType.NONE));
+        } catch (AerospikeException e) {
+            if (e.getResultCode() != ResultCode.KEY_NOT_FOUND_ERROR) {
+                throw e;
+            }
+        }
+    }
+
+    private void compactBucketsIfDue() {
+        final long compactedAt = packedCompactedAt.get();
+        final long now = System.currentTimeMillis();
+        if (now - compactedAt > TimeUnit.SECONDS.toMillis(packedCompactionIntervalInSeconds)
+                && packedCompactedAt.compareAndSet(compactedAt, now)) {
+            try {
+                compactBuckets();
+            } catch (AerospikeException e) {
+                log.warn("Cache {} buckets compaction issue: {}", template.getSetname(), e.getMessage());
+                log.trace("", e);
+            }
+        }
+    }
+
+    private String bucketKey(final String key) {
+        final int hash = Hashing.murmur3_32().hashString(key, StandardCharsets.UTF_8).asInt();
+        return recordKey(BUCKET_KEY_PREFIX + Math.floorMod(hash, packedBuckets));
+    }
+
+    private void assertNotPacked() {
+        Assert.state(packedBuckets == 0, "operation is not supported for packed cache " + getName());
+    }
+
+    private Map<?, ?> getMap(final Object key) {
+        final ValueWrapper vw = get(key);
+        if (vw == null || vw.get() == null) {
+            return null;
+        }
+        if (!(vw.get() instanceof Map)) {
+            throw new IllegalStateException("cache entry '" + key + "' has been found but failed to match '"
+                    + Map.class + "' type");
+        }
+        return (Map<?, ?>) vw.get();
+    }
+
+    /**
+     * Native map can hold maps with string keys which can be re-created by default constructor.
+     */
+    private boolean isNativeMapCandidate(final Object value) {
+        if (!mapValues || !(value instanceof Map) || !ClassUtils.hasConstructor(value.getClass())) {
+            return false;
+        }
+        for (Object mapKey : ((Map<?, ?>) value).keySet()) {
+            if (!(mapKey instanceof String)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Native values are stored as is unless they would be chunked, rejected by size or deduplicated as serialized.
+     */
+    private boolean isNativeCandidate(final Object value) {
+        if (!nativeValues || value == null || NativeValues.marker(value.getClass()) == null) {
+            return false;
+        }
+        final int size;
+        if (value instanceof String) {
+            // upper bound of UTF-8 encoded size
+            size = ((String) value).length() * 3;
+        } else if (value instanceof byte[]) {
+            size = ((byte[]) value).length;
+        } else {
+            return true;
+        }
+        return (chunkSizeInBytes <= 0 || size <= chunkSizeInBytes)
+                && (maxValueSizeInBytes <= 0 || size <= maxValueSizeInBytes)
+                && (dedupThresholdInBytes <= 0 || size < dedupThresholdInBytes);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> toEntryPayload(final Object value) {
+        if (value == null) {
+            return Collections.<Object> singletonList("NIL");
+        }
+        return Arrays.<Object> asList(value.getClass().getName(), serializer.serialize(value));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object fromEntryPayload(final List<?> payload) {
+        final String className = (String) payload.get(0);
+        if ("NIL".equals(className)) {
+            return null;
+        }
+        try {
+            return serializer.deserialize((byte[]) payload.get(1), Class.forName(className));
+        } catch (ClassNotFoundException e) {
+            throw new SerializationException(className + " deserialization problem", e);
+        }
+    }
+
+    private void putChunked(final String k, final String className, final byte[] payload, final long dictionaryId,
+            final int expiration) {
+        // unique chunk set per write, so concurrent writers never mix their chunks
+        final String chunkId = UUID.randomUUID().toString();
+        final int chunks = (payload.length + chunkSizeInBytes - 1) / chunkSizeInBytes;
+        log.trace("Persisting {} of {} bytes as {} chunks in cache: {}", k, payload.length, chunks,
+                template.getSetname());
+        for (int i = 0; i < chunks; i++) {
+            final int offset = i * chunkSizeInBytes;
+            template.persist(chunkKey(k, chunkId, i),
+                    new Bin(VALUE_BIN, payload, offset, Math.min(chunkSizeInBytes, payload.length - offset)),
+                    expiration);
+        }
+        final Set<Bin> manifest = new HashSet<>(4, 1);
+        manifest.add(new Bin(CLASS_NAME_BIN, className));
+        manifest.add(Bin.asNull(VALUE_BIN));
+        manifest.add(new Bin(CHUNKS_BIN, Arrays.<Object> asList(chunkId, chunks, payload.length)));
+        resetFormatBins(manifest, CHUNKS_BIN);
+        addDictionaryBin(manifest, dictionaryId);
+        template.persist(k, manifest, expiration);
+    }
+
+    /**
+     * Reads chunks in a single batch request and reassembles the payload.
+     */
+    private byte[] readChunks(final String k, final List<?> manifest) {
+        final String chunkId = (String) manifest.get(0);
+        final int chunks = ((Long) manifest.get(1)).intValue();
+        final int length = ((Long) manifest.get(2)).intValue();
+        final List<String> keys = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            keys.add(chunkKey(k, chunkId, i));
+        }
+        final Record[] records = template.fetch(keys);
+        final byte[] payload = new byte[length];
+        int offset = 0;
+        for (Record chunk : records) {
+            final byte[] part = chunk == null ? null : (byte[]) chunk.getValue(VALUE_BIN);
+            if (part == null || offset + part.length > length) {
+                throw new SerializationException("cache entry '" + k + "' has missing or corrupted chunks");
+            }
+            System.arraycopy(part, 0, payload, offset, part.length);
+            offset += part.length;
+        }
+        if (offset != length) {
+            throw new SerializationException("cache entry '" + k + "' has missing or corrupted chunks");
+        }
+        return payload;
+    }
+
+    /**
+     * Returns chunk manifest of the entry, <code>null</code> if entry is missing or not chunked.
+     */
+    private List<?> fetchManifest(final String k) {
+        final Record record = template.fetch(k, CHUNKS_BIN);
+        return record == null ? null : record.getList(CHUNKS_BIN);
+    }
+
+    private void deleteChunks(final String k, final List<?> manifest) {
+        if (manifest != null) {
+            final String chunkId = (String) manifest.get(0);
+            final int chunks = ((Long) manifest.get(1)).intValue();
+            for (int i = 0; i < chunks; i++) {
+                template.delete(chunkKey(k, chunkId, i));
+            }
+        }
+    }
+
+    /**
+     * Extends TTL of all chunks, chunks are touched before the entry, so the entry never outlives them.
+     * 
+     * @return <code>true</code> if all chunks exist
+     */
+    private boolean touchChunks(final String k, final List<?> manifest, final int expiration) {
+        final String chunkId = (String) manifest.get(0);
+        final int chunks = ((Long) manifest.get(1)).intValue();
+        for (int i = 0; i < chunks; i++) {
+            if (!template.touch(chunkKey(k, chunkId, i), ANY_RECORD, expiration)) {
+                log.debug("Chunk {} of {} is missing in cache: {}", i, k, template.getSetname());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String chunkKey(final String k, final String chunkId, final int index) {
+        return k + "#" + chunkId + "#" + index;
+    }
+
+    private void putDeduplicated(final String k, final String className, final byte[] payload,
+            final long dictionaryId, final int expiration) {
+        final String hash = Hashing.sha256().hashBytes(payload).toString();
+        final String contentKey = CONTENT_KEY_PREFIX + hash;
+        // content stored recently only gets its TTL extended
+        if (contentCache.getIfPresent(hash) == null || !touchContent(contentKey, expiration)) {
+            if (!template.persistIfAbsent(contentKey, new Bin(VALUE_BIN, payload), expiration)) {
+                // stored by another entry
+                touchContent(contentKey, expiration);
+            }
+            contentCache.put(hash, payload);
+        }
+        log.trace("Persisting {} as content {} in cache: {}", k, hash, template.getSetname());
+        final Set<Bin> bins = new HashSet<>(4, 1);
+        bins.add(new Bin(CLASS_NAME_BIN, className));
+        bins.add(Bin.asNull(VALUE_BIN));
+        bins.add(new Bin(CONTENT_HASH_BIN, hash));
+        resetFormatBins(bins, CONTENT_HASH_BIN);
+        addDictionaryBin(bins, dictionaryId);
+        template.persist(k, bins, expiration);
+    }
+
+    /**
+     * Extends content TTL to cover the entry expiration. Content TTL is never shortened, so it outlives all entries
+     * referencing it.
+     * 
+     * @return <code>true</code> if content exists
+     */
+    private boolean touchContent(final String contentKey, final int expiration) {
+        final Expression expiresBefore;
+        if (expiration == -1) {
+            expiresBefore = Exp.build(Exp.ne(Exp.voidTime(), Exp.val(-1)));
+        } else if (expiration > 0) {
+            final long voidTime = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis())
+                    + TimeUnit.SECONDS.toNanos(expiration);
+            expiresBefore = Exp.build(Exp.and(
+                    Exp.ne(Exp.voidTime(), Exp.val(-1)),
+                    Exp.lt(Exp.voidTime(), Exp.val(voidTime))));
+        } else {
+            // namespace default TTL
+            expiresBefore = ANY_RECORD;
+        }
+        // filtered out content already lives longer
+        return template.touch(contentKey, expiresBefore, expiration) || template.hasKey(contentKey);
+    }
+
+    private byte[] readContent(final String k, final String hash) {
+        final byte[] cached = contentCache.getIfPresent(hash);
+        if (cached != null) {
+            return cached;
+        }
+        final Record record = template.fetch(CONTENT_KEY_PREFIX + hash);
+        if (record == null) {
+            throw new SerializationException("cache entry '" + k + "' content " + hash + " is missing");
+        }
+        final byte[] payload = (byte[]) record.getValue(VALUE_BIN);
+        contentCache.put(hash, payload);
+        return payload;
+    }
+
+    /**
+     * Writes the entry only if stored payload hash differs, otherwise only extends entry TTL.
+     * 
+     * @return <code>true</code> if entry has been written, <code>false</code> if write has been suppressed
+     */
+    private boolean putUnlessUnchanged(final String k, final Set<Bin> bins, final long hash, final int expiration) {
+        final Exp storedHash = Exp.intBin(PAYLOAD_HASH_BIN);
+        if (Long.valueOf(hash).equals(writtenHashes.getIfPresent(k))
+                && template.touch(k, Exp.build(Exp.eq(storedHash, Exp.val(hash))), expiration)) {
+            log.trace("Unchanged {}, write suppressed in cache: {}", k, template.getSetname());
+            return false;
+        }
+        final boolean written = template.persist(k, bins, Exp.build(Exp.or(
+                Exp.not(Exp.binExists(PAYLOAD_HASH_BIN)),
+                Exp.ne(storedHash, Exp.val(hash)))), expiration);
+        if (written) {
+            log.trace("Persisting {}={} in cache: {}", k, bins, template.getSetname());
+        } else {
+            log.trace("Unchanged {}, write suppressed in cache: {}", k, template.getSetname());
+            template.touch(k, Exp.build(Exp.eq(storedHash, Exp.val(hash))), expiration);
+        }
+        writtenHashes.put(k, hash);
+        return written;
+    }
+
+    private long payloadHash(final byte[] payload) {
+        return Hashing.murmur3_128().hashBytes(payload).asLong();
+    }
+
+    /**
+     * Clears bins of other entry formats the record may have been written with before.
+     */
+    private void resetFormatBins(final Set<Bin> bins, final String formatBin) {
+        if (chunkSizeInBytes > 0 && !CHUNKS_BIN.equals(formatBin)) {
+            bins.add(Bin.asNull(CHUNKS_BIN));
+        }
+        if (dedupThresholdInBytes > 0 && !CONTENT_HASH_BIN.equals(formatBin)) {
+            bins.add(Bin.asNull(CONTENT_HASH_BIN));
+        }
+        if (writeSuppression && !PAYLOAD_HASH_BIN.equals(formatBin)) {
+            bins.add(Bin.asNull(PAYLOAD_HASH_BIN));
+        }
+    }
+
+    /**
+     * Records compression dictionary of the payload, clears the one the record may have been written with before.
+     */
+    private void addDictionaryBin(final Set<Bin> bins, final long dictionaryId) {
+        if (dictionaryId != 0) {
+            bins.add(new Bin(DICTIONARY_BIN, dictionaryId));
+        } else if (compressionDictionaries != null) {
+            bins.add(Bin.asNull(DICTIONARY_BIN));
+        }
+    }
+
+    private static com.google.common.cache.Cache<String, byte[]> buildContentCache(final long maxSizeInBytes) {
+        return CacheBuilder.newBuilder()
+                .maximumWeight(maxSizeInBytes)
+                .weigher(new Weigher<String, byte[]>() {
+                    public int weigh(final String key, final byte[] value) {
+                        return value.length;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Builds bins of entry record holding the value, serialized value is compressed with current dictionary.
+     */
+    private Set<Bin> toEntryBins(final Object value) {
+        if (value == null || isNativeMapCandidate(value) || isNativeCandidate(value)) {
+            return toBins(value);
+        }
+        final byte[] serialized = serialize(value);
+        final CompressionDictionaries.Dictionary dictionary = compressionDictionary(serialized);
+        if (dictionary == null) {
+            return toBins(value.getClass().getName(), serialized);
+        }
+        final byte[] payload = dictionary.compress(serialized);
+        return toBins(value.getClass().getName(), payload, writeSuppression ? payloadHash(payload) : 0,
+                dictionary.getId());
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] serialize(final Object value) {
+        // serializer accepts values of any class
+        return serializer.serialize(value);
+    }
+
+    /**
+     * Samples serialized value for dictionary training and returns the dictionary to compress it with.
+     * 
+     * @return current dictionary or <code>null</code> if values are not compressed by the cache
+     */
+    private CompressionDictionaries.Dictionary compressionDictionary(final byte[] serialized) {
+        if (compressionDictionaries == null) {
+            return null;
+        }
+        compressionDictionaries.sample(serialized);
+        return compressionDictionaries.current();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<Bin> toBins(final Object value) {
+        final Set<Bin> bins = new HashSet<>(2, 1);
+        if (isNativeMapCandidate(value)) {
+            final Map<String, Object> entries = new HashMap<>();
+            for (Map.Entry<String, ?> entry : ((Map<String, ?>) value).entrySet()) {
+                entries.put(entry.getKey(), toEntryPayload(entry.getValue()));
+            }
+            bins.add(new Bin(CLASS_NAME_BIN, value.getClass().getName()));
+            bins.add(new Bin(VALUE_BIN, entries, MapOrder.KEY_ORDERED));
+        } else if (isNativeCandidate(value)) {
+            bins.add(new Bin(CLASS_NAME_BIN, NativeValues.marker(value.getClass())));
+            bins.add(new Bin(VALUE_BIN, NativeValues.toValue(value)));
+        } else if (value != null) {
+            return toBins(value.getClass().getName(), serializer.serialize(value));
+        } else {
+            bins.add(new Bin(CLASS_NAME_BIN, "NIL"));
+            bins.add(new Bin(VALUE_BIN, "NIL"));
+        }
+        resetFormatBins(bins, VALUE_BIN);
+        addDictionaryBin(bins, 0);
+        return bins;
+    }
+
+    private Set<Bin> toBins(final String className, final byte[] payload) {
+        return toBins(className, payload, writeSuppression ? payloadHash(payload) : 0, 0);
+    }
+
+    private Set<Bin> toBins(final String className, final byte[] payload, final long hash, final long dictionaryId) {
+        final Set<Bin> bins = new HashSet<>(6, 1);
+        bins.add(new Bin(CLASS_NAME_BIN, className));
+        bins.add(new Bin(VALUE_BIN, payload));
+        if (writeSuppression) {
+            bins.add(new Bin(PAYLOAD_HASH_BIN, hash));
+            resetFormatBins(bins, PAYLOAD_HASH_BIN);
+        } else {
+            resetFormatBins(bins, VALUE_BIN);
+        }
+        addDictionaryBin(bins, dictionaryId);
+        return bins;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object toValue(final String k, final Record record) throws ClassNotFoundException {
+        final String className = record.getString(CLASS_NAME_BIN);
+        if ("NIL".equals(className)) {
+            // null-value stored
+            return null;
+        }
+        if (NativeValues.isMarker(className)) {
+            return NativeValues.fromValue(className, record.getValue(VALUE_BIN));
+        }
+        final byte[] payload = toPayload(k, record);
+        if (payload != null) {
+            return serializer.deserialize(payload, Class.forName(className));
+        }
+        final Object storedValue = record.getValue(VALUE_BIN);
+        if (storedValue instanceof Map) {
+            // native map
+            final Map<Object, Object> map = (Map<Object, Object>) BeanUtils.instantiateClass(Class.forName(className));
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) storedValue).entrySet()) {
+                map.put(entry.getKey(), fromEntryPayload((List<?>) entry.getValue()));
+            }
+            return map;
+        }
+        // natively stored value, e.g. counter
+        return storedValue;
+    }
+
+    /**
+     * Returns serialized value of the record, <code>null</code> if the record does not hold serialized value.
+     */
+    private byte[] toPayload(final String k, final Record record) {
+        final byte[] payload = readPayload(k, record);
+        final long dictionaryId = record.getLong(DICTIONARY_BIN);
+        if (payload == null || dictionaryId == 0) {
+            return payload;
+        }
+        if (compressionDictionaries == null) {
+            throw new SerializationException("cache entry '" + k + "' is compressed with dictionary "
+                    + dictionaryId + " but dictionary compression is disabled");
+        }
+        return compressionDictionaries.decompress(payload, dictionaryId);
+    }
+
+    /**
+     * Returns stored value of the record as written, <code>null</code> if the record does not hold serialized value.
+     */
+    private byte[] readPayload(final String k, final Record record) {
+        final List<?> manifest = record.getList(CHUNKS_BIN);
+        if (manifest != null) {
+            return readChunks(k, manifest);
+        }
+        final String contentHash = record.getString(CONTENT_HASH_BIN);
+        if (contentHash != null) {
+            return readContent(k, contentHash);
+        }
+        final Object storedValue = record.getValue(VALUE_BIN);
+        return storedValue instanceof byte[] ? (byte[]) storedValue : null;
+    }
+
+    /**
+     * Builds Aerospike record key for cache key. In versioned keyspace mode the key is prefixed with current cache
+     * generation.
+     */
+    private String recordKey(final Object key) {
+        if (versionedKeyspace) {
+            return currentGeneration() + ":" + key;
+        }
+        return key.toString();
+    }
+
+    private long currentGeneration() {
+        if (System.currentTimeMillis() - generationRefreshedAt > generationRefreshIntervalInMillis) {
+            final Record record = template.fetch(GENERATION_KEY);
+            updateGeneration(record == null ? 0 : record.getLong(GENERATION_BIN));
+        }
+        return generation;
+    }
+
+    private synchronized void updateGeneration(final long candidate) {
+        // never go back to an older generation even if generation record has been lost
+        generation = Math.max(generation, candidate);
+        generationRefreshedAt = System.currentTimeMillis();
+    }
+
+    public boolean isVersionedKeyspace() {
+        return versionedKeyspace;
+    }
+
+    public void setVersionedKeyspace(final boolean versionedKeyspace) {
+        this.versionedKeyspace = versionedKeyspace;
+    }
+
+    public long getGenerationRefreshIntervalInMillis() {
+        return generationRefreshIntervalInMillis;
+    }
+
+    public void setGenerationRefreshIntervalInMillis(final long generationRefreshIntervalInMillis) {
+        this.generationRefreshIntervalInMillis = generationRefreshIntervalInMillis;
+    }
+
+    public boolean isMapValues() {
+        return mapValues;
+    }
+
+    public void setMapValues(final boolean mapValues) {
+        this.mapValues = mapValues;
+    }
+
+    public int getPackedBuckets() {
+        return packedBuckets;
+    }
+
+    public void setPackedBuckets(final int packedBuckets) {
+        this.packedBuckets = packedBuckets;
+    }
+
+    public long getPackedCompactionIntervalInSeconds() {
+        return packedCompactionIntervalInSeconds;
+    }
+
+    public void setPackedCompactionIntervalInSeconds(final long packedCompactionIntervalInSeconds) {
+        this.packedCompactionIntervalInSeconds = packedCompactionIntervalInSeconds;
+    }
+
+    public int getChunkSizeInBytes() {
+        return chunkSizeInBytes;
+    }
+
+    public void setChunkSizeInBytes(final int chunkSizeInBytes) {
+        this.chunkSizeInBytes = chunkSizeInBytes;
+    }
+
+    public int getMaxValueSizeInBytes() {
+        return maxValueSizeInBytes;
+    }
+
+    public void setMaxValueSizeInBytes(final int maxValueSizeInBytes) {
+        this.maxValueSizeInBytes = maxValueSizeInBytes;
+    }
+
+    public int getDedupThresholdInBytes() {
+        return dedupThresholdInBytes;
+    }
+
+    public void setDedupThresholdInBytes(final int dedupThresholdInBytes) {
+        this.dedupThresholdInBytes = dedupThresholdInBytes;
+    }
+
+    public void setContentCacheSizeInBytes(final long contentCacheSizeInBytes) {
+        this.contentCache = buildContentCache(contentCacheSizeInBytes);
+    }
+
+    public boolean isWriteSuppression() {
+        return writeSuppression;
+    }
+
+    public void setWriteSuppression(final boolean writeSuppression) {
+        this.writeSuppression = writeSuppression;
+    }
+
+    public boolean isLazyDeserialization() {
+        return lazyDeserialization;
+    }
+
+    public void setLazyDeserialization(final boolean lazyDeserialization) {
+        this.lazyDeserialization = lazyDeserialization;
+    }
+
+    public boolean isNativeValues() {
+        return nativeValues;
+    }
+
+    public void setNativeValues(final boolean nativeValues) {
+        this.nativeValues = nativeValues;
+    }
+
+    public AdmissionPolicy getAdmissionPolicy() {
+        return admissionPolicy;
+    }
+
+    public void setAdmissionPolicy(final AdmissionPolicy admissionPolicy) {
+        this.admissionPolicy = admissionPolicy;
+    }
+
+    public TtlPolicy getTtlPolicy() {
+        return ttlPolicy;
+    }
+
+    public void setTtlPolicy(final TtlPolicy ttlPolicy) {
+        this.ttlPolicy = ttlPolicy;
+    }
+
+    /**
+     * Enables near cache of the size, <code>0</code> disables it. Near cached values are served after a metadata-only
+     * read confirms the stored entry has not changed.
+     * 
+     * @param nearCacheSize
+     *            max number of near cached values
+     */
+    public void setNearCacheSize(final int nearCacheSize) {
+        Assert.isTrue(nearCacheSize >= 0, "near cache size can't be negative");
+        if (nearCacheSize == 0) {
+            this.nearCache = null;
+        } else {
+            final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(nearCacheSize);
+            if (template.getExpiration() > 0) {
+                // near cached value never outlives the stored entry TTL
+                builder.expireAfterWrite(template.getExpiration(), TimeUnit.SECONDS);
+            }
+            this.nearCache = builder.build();
+        }
+        updateInvalidationLog();
+    }
+
+    public int getNearCacheInvalidationIntervalInMillis() {
+        return nearCacheInvalidationIntervalInMillis;
+    }
+
+    /**
+     * Switches near cache from validation reads to invalidation log polled at the interval. All nodes sharing the
+     * cache should use the same setting, as only nodes with invalidation log append changes to it.
+     * 
+     * @param nearCacheInvalidationIntervalInMillis
+     *            max near cache staleness, <code>0</code> to validate near cached values on each read
+     */
+    public void setNearCacheInvalidationIntervalInMillis(final int nearCacheInvalidationIntervalInMillis) {
+        this.nearCacheInvalidationIntervalInMillis = nearCacheInvalidationIntervalInMillis;
+        updateInvalidationLog();
+    }
+
+    public int getInvalidationLogSize() {
+        return invalidationLogSize;
+    }
+
+    /**
+     * Sets total number of slot records in near cache invalidation log, spread over its rings. A node lagging more
+     * changes behind in a ring drops its whole near cache.
+     * 
+     * @param invalidationLogSize
+     *            invalidation log size
+     */
+    public void setInvalidationLogSize(final int invalidationLogSize) {
+        this.invalidationLogSize = invalidationLogSize;
+        updateInvalidationLog();
+    }
+
+    /**
+     * Invalidation log is only kept with near cache, caches without one do not pay for appends.
+     */
+    private void updateInvalidationLog() {
+        this.invalidationLog = nearCache != null && nearCacheInvalidationIntervalInMillis > 0
+                ? new InvalidationLog(template, invalidationLogSize, nearCacheInvalidationIntervalInMillis) : null;
+    }
+
+    public int getCompressionDictionarySizeInBytes() {
+        return compressionDictionarySizeInBytes;
+    }
+
+    /**
+     * Enables compression of serialized values with a dictionary trained from values of this cache, <code>0</code>
+     * disables it. Current dictionary is loaded from the cache set, a new one is trained from values written if there
+     * is none. Serializer should not compress values itself.
+     * 
+     * @param compressionDictionarySizeInBytes
+     *            max dictionary size, e.g. <code>16384</code>
+     */
+    public void setCompressionDictionarySizeInBytes(final int compressionDictionarySizeInBytes) {
+        Assert.isTrue(compressionDictionarySizeInBytes >= 0, "dictionary size can't be negative");
+        this.compressionDictionarySizeInBytes = compressionDictionarySizeInBytes;
+        updateCompressionDictionaries();
+    }
+
+    public int getCompressionTrainingSamples() {
+        return compressionTrainingSamples;
+    }
+
+    public void setCompressionTrainingSamples(final int compressionTrainingSamples) {
+        this.compressionTrainingSamples = compressionTrainingSamples;
+        updateCompressionDictionaries();
+    }
+
+    /**
+     * Trains new compression dictionary from values written next. Entries compressed with previous dictionaries stay
+     * readable.
+     */
+    public void retrainCompressionDictionary() {
+        Assert.state(compressionDictionaries != null, "dictionary compression is disabled");
+        compressionDictionaries.retrain();
+    }
+
+    private void updateCompressionDictionaries() {
+        this.compressionDictionaries = compressionDictionarySizeInBytes > 0
+                ? new CompressionDictionaries(template, compressionDictionarySizeInBytes, compressionTrainingSamples)
+                : null;
+    }
+
+    public TtlResolver getTtlResolver() {
+        return ttlResolver;
+    }
+
+    public void setTtlResolver(final TtlResolver ttlResolver) {
+        this.ttlResolver = ttlResolver;
+    }
+
+    public int getTtlJitterPercent() {
+        return ttlJitterPercent;
+    }
+
+    public void setTtlJitterPercent(final int ttlJitterPercent) {
+        Assert.isTrue(ttlJitterPercent >= 0 && ttlJitterPercent < 100, "TTL jitter should be within [0, 100) percent");
+        this.ttlJitterPercent = ttlJitterPercent;
+    }
+
+    /**
+     * Returns cache usage counters.
+     * 
+     * @return cache statistics
+     */
+    public AerospikeCacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    public int getMaxCasAttempts() {
+        return maxCasAttempts;
+    }
+
+    public void setMaxCasAttempts(final int maxCasAttempts) {
+        this.maxCasAttempts = maxCasAttempts;
+    }
+
+    @Override
+    public String toString() {
+        return "AerospikeCache [name=" + getName() + "]";
+    }
+
+    /**
+     * Returns time the record expires at, as of its read. Extension by a later touch is not reflected.
+     */
+    private static long expiresAt(final Record record) {
+        if (record.expiration == 0) {
+            return Long.MAX_VALUE;
+        }
+        return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(record.getTimeToLive());
+    }
+
+    /**
+     * Near cached value with generation and expiration time of the entry it has been read from.
+     */
+    private static final class NearEntry {
+        private final int generation;
+        private final long expiresAt;
+        private final ValueWrapper wrapper;
+        private final Class<?> valueType;
+        private final String contentHash;
+        private final List<?> chunks;
+
+        NearEntry(final int generation, final long expiresAt, final ValueWrapper wrapper, final Class<?> valueType,
+                final String contentHash, final List<?> chunks) {
+            this.generation = generation;
+            this.expiresAt = expiresAt;
+            this.wrapper = wrapper;
+            this.valueType = valueType;
+            this.contentHash = contentHash;
+            this.chunks = chunks;
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -86,6 +86,15 @@ public class AerospikeCacheManager implements CacheManager {
         return caches.keySet();
     }
 
+    /**
+     * Returns serializer shared by the caches, e.g. to read its compression metrics.
+     * 
+     * @return value serializer
+     */
+    public Serializer getSerializer() {
+        return serializer;
+    }
+
     public AerospikeCache createCache(final String name) {
         return createCache(name, defaultTimeToLiveInSeconds);
     }
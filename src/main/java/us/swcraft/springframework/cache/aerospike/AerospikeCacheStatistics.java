@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache usage counters.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public class AerospikeCacheStatistics {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder nearHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder admissionRejections = new LongAdder();
+
+    void hit() {
+        hits.increment();
+    }
+
+    void nearHit() {
+        nearHits.increment();
+    }
+
+    void miss() {
+        misses.increment();
+    }
+
+    void put() {
+        puts.increment();
+    }
+
+    void admissionRejection() {
+        admissionRejections.increment();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns number of hits served from near cache, included in hits.
+     * 
+     * @return near cache hits count
+     */
+    public long getNearHits() {
+        return nearHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns number of values persisted in the cache.
+     * 
+     * @return persisted values count
+     */
+    public long getPuts() {
+        return puts.sum();
+    }
+
+    /**
+     * Returns number of values not persisted because admission policy rejected them.
+     * 
+     * @return rejected values count
+     */
+    public long getAdmissionRejections() {
+        return admissionRejections.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "AerospikeCacheStatistics [hits=" + getHits() + ", nearHits=" + getNearHits() + ", misses=" + getMisses() + ", puts=" + getPuts()
+                + ", admissionRejections=" + getAdmissionRejections() + "]";
+    }
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike;
+
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import us.swcraft.springframework.store.persistence.AerospikeTemplate;
+import us.swcraft.springframework.store.serialization.SerializationException;
+
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Record;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+
+/**
+ * Zstandard dictionaries of a cache trained from a sample of its serialized values. Dictionaries are stored in the
+ * cache set, never expire and are kept on cache clear, so entries compressed with any dictionary of any node stay
+ * readable. The current dictionary is loaded on start, a node without one samples values written and trains it in
+ * background.
+ * 
+ * @author Vlad Aleksandrov
+ */
+class CompressionDictionaries {
+
+    private static final String CURRENT_KEY = "__dictionary__";
+    private static final String DICTIONARY_KEY_PREFIX = "__dictionary:";
+    private static final String ID_BIN = "S";
+    private static final String DICTIONARY_BIN = "V";
+
+    private static final int LEVEL = 3;
+
+    /**
+     * Sample buffer size in dictionary sizes, training needs about a hundred times more sample data than the size of
+     * the dictionary.
+     */
+    private static final int SAMPLE_BUFFER_RATIO = 100;
+
+    private static final Logger log = LoggerFactory.getLogger(CompressionDictionaries.class);
+
+    private final AerospikeTemplate template;
+    private final int dictionarySize;
+    private final int trainingSamples;
+
+    private final ConcurrentMap<Long, ZstdDictDecompress> decompressors = new ConcurrentHashMap<>();
+
+    private volatile Dictionary current;
+    private volatile Samples samples;
+
+    /**
+     * @param template
+     *            cache template
+     * @param dictionarySize
+     *            max dictionary size in bytes
+     * @param trainingSamples
+     *            number of values sampled for training
+     */
+    CompressionDictionaries(final AerospikeTemplate template, final int dictionarySize, final int trainingSamples) {
+        Assert.isTrue(dictionarySize > 0, "dictionary size should be positive");
+        Assert.isTrue(trainingSamples > 0, "number of training samples should be positive");
+        this.template = template;
+        this.dictionarySize = dictionarySize;
+        this.trainingSamples = trainingSamples;
+        final Record pointer = template.fetch(CURRENT_KEY);
+        final byte[] stored = pointer == null ? null : fetch(pointer.getLong(ID_BIN));
+        if (stored != null) {
+            current = new Dictionary(pointer.getLong(ID_BIN), stored);
+            log.debug("Loaded compression dictionary {} of cache {}", current.getId(), template.getSetname());
+        } else {
+            retrain();
+        }
+    }
+
+    /**
+     * Returns dictionary new values are compressed with.
+     * 
+     * @return current dictionary or <code>null</code> if not trained yet
+     */
+    Dictionary current() {
+        return current;
+    }
+
+    /**
+     * Samples serialized value while sampling, starts training of new dictionary in background once enough values are
+     * sampled.
+     * 
+     * @param payload
+     *            serialized value, not modified afterwards
+     */
+    void sample(final byte[] payload) {
+        final Samples sampling = samples;
+        if (sampling != null && sampling.add(payload)) {
+            startTraining(sampling);
+        }
+    }
+
+    /**
+     * Starts sampling values for a new dictionary. Current dictionary is used until the new one is trained.
+     */
+    void retrain() {
+        samples = new Samples(dictionarySize * SAMPLE_BUFFER_RATIO, trainingSamples);
+    }
+
+    /**
+     * Decompresses value compressed with given dictionary, loading the dictionary if needed.
+     * 
+     * @param payload
+     *            compressed value
+     * @param dictionaryId
+     *            id of the dictionary
+     * @return serialized value
+     */
+    byte[] decompress(final byte[] payload, final long dictionaryId) {
+        ZstdDictDecompress decompressor = decompressors.get(dictionaryId);
+        if (decompressor == null) {
+            final byte[] stored = fetch(dictionaryId);
+            if (stored == null) {
+                throw new SerializationException("compression dictionary " + dictionaryId + " of cache "
+                        + template.getSetname() + " not found");
+            }
+            decompressor = new ZstdDictDecompress(stored);
+            final ZstdDictDecompress loaded = decompressors.putIfAbsent(dictionaryId, decompressor);
+            if (loaded != null) {
+                decompressor.close();
+                decompressor = loaded;
+            }
+        }
+        final long size = Zstd.getFrameContentSize(payload);
+        if (size < 0 || size > Integer.MAX_VALUE - 8) {
+            throw new SerializationException("invalid compressed value size " + size);
+        }
+        try {
+            return Zstd.decompress(payload, decompressor, (int) size);
+        } catch (ZstdException e) {
+            throw new SerializationException("malformed compressed value", e);
+        }
+    }
+
+    /**
+     * Training takes seconds, so it is done by a background thread instead of the writer reaching the sample limit.
+     */
+    private synchronized void startTraining(final Samples sampled) {
+        if (samples != sampled) {
+            // started concurrently
+            return;
+        }
+        samples = null;
+        final Thread training = new Thread(() -> train(sampled), "compression-dictionary-" + template.getSetname());
+        training.setDaemon(true);
+        training.start();
+    }
+
+    private void train(final Samples sampled) {
+        try {
+            final ZstdDictTrainer trainer = new ZstdDictTrainer(sampled.capacity, dictionarySize);
+            for (byte[] sample : sampled.values) {
+                trainer.addSample(sample);
+            }
+            final byte[] trained = trainer.trainSamples();
+            final Dictionary dictionary = new Dictionary(Zstd.getDictIdFromDict(trained), trained);
+            store(dictionary);
+            current = dictionary;
+            log.info("Trained compression dictionary {} of {} bytes for cache {}", dictionary.getId(),
+                    trained.length, template.getSetname());
+        } catch (ZstdException | AerospikeException e) {
+            log.warn("Compression dictionary training for cache {} failed: {}", template.getSetname(),
+                    e.getMessage());
+            retrain();
+        }
+    }
+
+    private void store(final Dictionary dictionary) {
+        final Set<Bin> bins = new HashSet<>(2, 1);
+        bins.add(new Bin(DICTIONARY_BIN, dictionary.bytes));
+        bins.add(new Bin(AerospikeCache.RETAINED_BIN, true));
+        template.persist(DICTIONARY_KEY_PREFIX + dictionary.getId(), bins, -1);
+        final Set<Bin> pointer = new HashSet<>(2, 1);
+        pointer.add(new Bin(ID_BIN, dictionary.getId()));
+        pointer.add(new Bin(AerospikeCache.RETAINED_BIN, true));
+        template.persist(CURRENT_KEY, pointer, -1);
+        decompressors.putIfAbsent(dictionary.getId(), new ZstdDictDecompress(dictionary.bytes));
+    }
+
+    private byte[] fetch(final long dictionaryId) {
+        final Record record = template.fetch(DICTIONARY_KEY_PREFIX + dictionaryId);
+        return record == null ? null : (byte[]) record.getValue(DICTIONARY_BIN);
+    }
+
+    /**
+     * Values sampled for training, bounded by training sample buffer size.
+     */
+    private static final class Samples {
+
+        private final int capacity;
+        private final int limit;
+        private final Queue<byte[]> values = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger count = new AtomicInteger();
+        private final AtomicLong size = new AtomicLong();
+
+        Samples(final int capacity, final int limit) {
+            this.capacity = capacity;
+            this.limit = limit;
+        }
+
+        /**
+         * @return <code>true</code> if enough values have been sampled
+         */
+        boolean add(final byte[] payload) {
+            final long sampledSize = size.addAndGet(payload.length);
+            if (sampledSize <= capacity) {
+                values.add(payload);
+            }
+            return count.incrementAndGet() >= limit || sampledSize >= capacity;
+        }
+    }
+
+    /**
+     * Trained dictionary.
+     */
+    static final class Dictionary {
+
+        private final long id;
+        private final byte[] bytes;
+        private final ZstdDictCompress compressor;
+
+        Dictionary(final long id, final byte[] bytes) {
+            this.id = id;
+            this.bytes = bytes;
+            this.compressor = new ZstdDictCompress(bytes, LEVEL);
+        }
+
+        long getId() {
+            return id;
+        }
+
+        byte[] compress(final byte[] payload) {
+            return Zstd.compress(payload, compressor);
+        }
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import com.aerospike.client.exp.Exp;
+import com.aerospike.client.exp.Expression;
+
+/**
+ * Common filter expressions for {@link AerospikeCache#evictWhere(Expression)}. Filters can be combined with
+ * {@link #and(Expression...)} and {@link #or(Expression...)}.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public final class EvictionFilters {
+
+    private EvictionFilters() {
+    }
+
+    /**
+     * Matches entries last updated before given instant.
+     * 
+     * @param instant
+     *            last update time threshold
+     * @return filter expression
+     */
+    public static Expression updatedBefore(final Instant instant) {
+        final long nanos = TimeUnit.SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano();
+        return Exp.build(Exp.lt(Exp.lastUpdate(), Exp.val(nanos)));
+    }
+
+    /**
+     * Matches entries holding value of given class.
+     * 
+     * @param type
+     *            cached value class
+     * @return filter expression
+     */
+    public static Expression valueClass(final Class<?> type) {
+        final String marker = NativeValues.marker(type);
+        if (marker != null) {
+            // natively stored values
+            return or(valueClassName(type.getName()), valueClassName(marker));
+        }
+        return valueClassName(type.getName());
+    }
+
+    /**
+     * Matches entries holding value of given class name. Useful to purge values of classes removed or changed
+     * incompatibly after a deploy.
+     * 
+     * @param className
+     *            cached value class name
+     * @return filter expression
+     */
+    public static Expression valueClassName(final String className) {
+        return Exp.build(Exp.eq(Exp.stringBin(AerospikeCache.CLASS_NAME_BIN), Exp.val(className)));
+    }
+
+    /**
+     * Matches entries with record size above the limit. Both device and memory storage sizes are checked.
+     * 
+     * @param bytes
+     *            record size limit in bytes
+     * @return filter expression
+     */
+    public static Expression sizeAbove(final long bytes) {
+        return Exp.build(Exp.or(
+                Exp.gt(Exp.deviceSize(), Exp.val(bytes)),
+                Exp.gt(Exp.memorySize(), Exp.val(bytes))));
+    }
+
+    /**
+     * Matches entries matching all given filters.
+     * 
+     * @param filters
+     *            filters to combine
+     * @return filter expression
+     */
+    public static Expression and(final Expression... filters) {
+        return combine(true, filters);
+    }
+
+    /**
+     * Matches entries matching any of given filters.
+     * 
+     * @param filters
+     *            filters to combine
+     * @return filter expression
+     */
+    public static Expression or(final Expression... filters) {
+        return combine(false, filters);
+    }
+
+    private static Expression combine(final boolean all, final Expression... filters) {
+        final Exp[] exps = new Exp[filters.length];
+        for (int i = 0; i < filters.length; i++) {
+            exps[i] = Exp.expr(filters[i]);
+        }
+        return Exp.build(all ? Exp.and(exps) : Exp.or(exps));
+    }
+
+}
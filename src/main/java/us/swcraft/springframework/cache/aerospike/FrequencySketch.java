@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * Count-min sketch estimating how many times keys have been read recently. The sketch is aged by halving all counters
+ * once the number of recorded reads reaches ten times the sketch width.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = { 0x97cb3127, 0xb492b66f, 0x9ae16a3b, 0xc3a5c85c };
+
+    private final int mask;
+    private final long sampleSize;
+    private final AtomicIntegerArray counters;
+    private final AtomicLong additions = new AtomicLong();
+
+    /**
+     * @param expectedKeys
+     *            expected number of distinct recently read keys, defines sketch width
+     */
+    public FrequencySketch(final int expectedKeys) {
+        Assert.isTrue(expectedKeys > 0, "expected keys should be positive");
+        final int width = Integer.highestOneBit(Math.max(expectedKeys - 1, 1)) << 1;
+        this.mask = width - 1;
+        this.sampleSize = 10L * width;
+        this.counters = new AtomicIntegerArray(DEPTH * width);
+    }
+
+    /**
+     * Records a read of the key.
+     * 
+     * @param key
+     *            cache key
+     */
+    public void increment(final Object key) {
+        final int hash = spread(key.hashCode());
+        for (int i = 0; i < DEPTH; i++) {
+            counters.incrementAndGet(index(hash, i));
+        }
+        if (additions.incrementAndGet() == sampleSize) {
+            age();
+        }
+    }
+
+    /**
+     * Returns estimated number of recent reads of the key.
+     * 
+     * @param key
+     *            cache key
+     * @return estimated frequency
+     */
+    public int frequency(final Object key) {
+        final int hash = spread(key.hashCode());
+        int frequency = Integer.MAX_VALUE;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, counters.get(index(hash, i)));
+        }
+        return frequency;
+    }
+
+    /**
+     * Halves all counters so that old reads fade away.
+     */
+    private synchronized void age() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, counters.get(i) >>> 1);
+        }
+        additions.set(0);
+    }
+
+    private int index(final int hash, final int row) {
+        int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+        h ^= h >>> 16;
+        return row * (mask + 1) + (h & mask);
+    }
+
+    private static int spread(final int hash) {
+        int h = hash * 0x85ebca6b;
+        h ^= h >>> 13;
+        return h * 0xc2b2ae35;
+    }
+
+}
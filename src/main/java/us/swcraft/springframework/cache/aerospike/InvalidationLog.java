@@ -0,0 +1,226 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.Assert;
+
+import us.swcraft.springframework.store.persistence.AerospikeTemplate;
+
+import com.aerospike.client.Bin;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Record;
+import com.google.common.cache.Cache;
+
+/**
+ * Broker-free near cache invalidation channel. Writers append keys of changed entries to one of several rings of slot
+ * records stored in the cache set, so no single sequence record gets hot. Each node polls the rings with local cursors
+ * and drops matching near cache entries. A node lagging more than a ring size behind drops the whole near cache.
+ * 
+ * @author Vlad Aleksandrov
+ */
+class InvalidationLog {
+
+    /**
+     * Logged key standing for all cache entries.
+     */
+    static final String ALL_KEYS = "*";
+
+    /**
+     * Number of rings appends are spread over. Invalidations are idempotent, so their order across rings does not
+     * matter.
+     */
+    private static final int SHARDS = 16;
+
+    private static final String SEQUENCE_KEY_PREFIX = "__invalidation__:";
+    private static final String SLOT_KEY_PREFIX = "__invalidation:";
+    private static final String SEQUENCE_BIN = "S";
+    private static final String KEY_BIN = "V";
+
+    /**
+     * Log records survive cache clear, restarted sequences would stay behind node cursors.
+     */
+    private static final Bin RETAINED = new Bin(AerospikeCache.RETAINED_BIN, true);
+
+    private static final Logger log = LoggerFactory.getLogger(InvalidationLog.class);
+
+    private final AerospikeTemplate template;
+    private final int shardSize;
+    private final long pollIntervalInMillis;
+    private final List<String> sequenceKeys = new ArrayList<>(SHARDS);
+
+    private volatile long polledAt;
+    private volatile long invalidations;
+    private boolean started;
+    private final long[] cursors = new long[SHARDS];
+    private final long[] stalledSequences = new long[SHARDS];
+    private final long[] stalledAts = new long[SHARDS];
+
+    /**
+     * @param template
+     *            cache template
+     * @param size
+     *            total number of slot records in the rings
+     * @param pollIntervalInMillis
+     *            min interval between polls, bounds near cache staleness
+     */
+    InvalidationLog(final AerospikeTemplate template, final int size, final long pollIntervalInMillis) {
+        Assert.isTrue(size > 0, "invalidation log size should be positive");
+        Assert.isTrue(pollIntervalInMillis > 0, "poll interval should be positive");
+        this.template = template;
+        this.shardSize = Math.max(1, size / SHARDS);
+        this.pollIntervalInMillis = pollIntervalInMillis;
+        for (int shard = 0; shard < SHARDS; shard++) {
+            sequenceKeys.add(SEQUENCE_KEY_PREFIX + shard);
+        }
+    }
+
+    /**
+     * Appends the changed entry key to a randomly chosen ring.
+     * 
+     * @param k
+     *            record key or {@link #ALL_KEYS}
+     */
+    void append(final String k) {
+        final int shard = ThreadLocalRandom.current().nextInt(SHARDS);
+        final long sequence = template.operate(sequenceKeys.get(shard), -1,
+                Operation.add(new Bin(SEQUENCE_BIN, 1L)), Operation.put(RETAINED),
+                Operation.get(SEQUENCE_BIN)).getLong(SEQUENCE_BIN);
+        final Set<Bin> bins = new HashSet<>(4, 1);
+        bins.add(new Bin(SEQUENCE_BIN, sequence));
+        bins.add(new Bin(KEY_BIN, k));
+        bins.add(RETAINED);
+        template.persist(slotKey(shard, sequence), bins, -1);
+    }
+
+    /**
+     * Returns number of processed invalidations. It changes whenever near cache entries are dropped.
+     * 
+     * @return log cursor
+     */
+    long cursor() {
+        return invalidations;
+    }
+
+    /**
+     * Drops near cache entries logged since last poll, if poll interval has passed.
+     * 
+     * @param nearCache
+     *            near cache to invalidate
+     */
+    void pollIfDue(final Cache<String, ?> nearCache) {
+        if (System.currentTimeMillis() - polledAt < pollIntervalInMillis) {
+            return;
+        }
+        synchronized (this) {
+            final long now = System.currentTimeMillis();
+            if (now - polledAt < pollIntervalInMillis) {
+                return;
+            }
+            poll(nearCache, now);
+            polledAt = now;
+        }
+    }
+
+    private void poll(final Cache<String, ?> nearCache, final long now) {
+        final Record[] sequences = template.fetch(sequenceKeys);
+        final long[] heads = new long[SHARDS];
+        for (int shard = 0; shard < SHARDS; shard++) {
+            heads[shard] = sequences[shard] == null ? 0 : sequences[shard].getLong(SEQUENCE_BIN);
+        }
+        if (!started) {
+            // nothing cached before the first poll
+            System.arraycopy(heads, 0, cursors, 0, SHARDS);
+            started = true;
+            return;
+        }
+        // slots of all rings are read in a single batch request
+        final List<String> slotKeys = new ArrayList<>();
+        for (int shard = 0; shard < SHARDS; shard++) {
+            if (heads[shard] < cursors[shard] || heads[shard] - cursors[shard] > shardSize) {
+                log.debug("Invalidation log of {} lagged behind, near cache dropped", template.getSetname());
+                dropAll(nearCache);
+                cursors[shard] = heads[shard];
+            }
+            for (long sequence = cursors[shard] + 1; sequence <= heads[shard]; sequence++) {
+                slotKeys.add(slotKey(shard, sequence));
+            }
+        }
+        if (slotKeys.isEmpty()) {
+            return;
+        }
+        final Record[] slots = template.fetch(slotKeys);
+        int offset = 0;
+        for (int shard = 0; shard < SHARDS; shard++) {
+            final int count = (int) (heads[shard] - cursors[shard]);
+            poll(nearCache, now, shard, heads[shard], slots, offset, count);
+            offset += count;
+        }
+    }
+
+    private void poll(final Cache<String, ?> nearCache, final long now, final int shard, final long head,
+            final Record[] slots, final int offset, final int count) {
+        for (int i = offset; i < offset + count; i++) {
+            final long sequence = cursors[shard] + 1;
+            final long slotSequence = slots[i] == null ? 0 : slots[i].getLong(SEQUENCE_BIN);
+            if (slotSequence > sequence) {
+                log.debug("Invalidation log of {} overwritten, near cache dropped", template.getSetname());
+                dropAll(nearCache);
+                cursors[shard] = head;
+                return;
+            }
+            if (slotSequence < sequence) {
+                // appended concurrently, the slot is not written yet
+                if (stalledSequences[shard] != sequence) {
+                    stalledSequences[shard] = sequence;
+                    stalledAts[shard] = now;
+                }
+                if (now - stalledAts[shard] >= pollIntervalInMillis) {
+                    log.debug("Invalidation log of {} slot {}:{} missing, near cache dropped", template.getSetname(),
+                            shard, sequence);
+                    dropAll(nearCache);
+                    cursors[shard] = head;
+                }
+                return;
+            }
+            final String k = slots[i].getString(KEY_BIN);
+            if (ALL_KEYS.equals(k)) {
+                nearCache.invalidateAll();
+            } else {
+                nearCache.invalidate(k);
+            }
+            invalidations++;
+            cursors[shard] = sequence;
+        }
+    }
+
+    private void dropAll(final Cache<String, ?> nearCache) {
+        nearCache.invalidateAll();
+        invalidations++;
+    }
+
+    private String slotKey(final int shard, final long sequence) {
+        return SLOT_KEY_PREFIX + shard + ":" + (sequence % shardSize);
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike;
+
+import org.springframework.cache.Cache.ValueWrapper;
+
+import us.swcraft.springframework.store.serialization.SerializationException;
+import us.swcraft.springframework.store.serialization.Serializer;
+
+/**
+ * Cached value holder which keeps the serialized value and deserializes it on first access. The deserialized value
+ * is memoized.
+ * 
+ * @author Vlad Aleksandrov
+ */
+@SuppressWarnings("rawtypes")
+public class LazyValueWrapper implements ValueWrapper {
+
+    private final Class type;
+    private final Serializer serializer;
+
+    private byte[] payload;
+    private volatile boolean deserialized;
+    private Object value;
+
+    public LazyValueWrapper(final byte[] payload, final Class<?> type, final Serializer serializer) {
+        this.payload = payload;
+        this.type = type;
+        this.serializer = serializer;
+    }
+
+    /**
+     * Returns the cached value, deserializing it on first call.
+     * 
+     * @return cached value
+     * @throws SerializationException
+     *             if the value can't be deserialized
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object get() {
+        if (!deserialized) {
+            synchronized (this) {
+                if (!deserialized) {
+                    value = serializer.deserialize(payload, type);
+                    // serialized form is not needed anymore
+                    payload = null;
+                    deserialized = true;
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Checks whether the value has been deserialized already.
+     * 
+     * @return <code>true</code> if the value has been deserialized
+     */
+    public boolean isDeserialized() {
+        return deserialized;
+    }
+
+}
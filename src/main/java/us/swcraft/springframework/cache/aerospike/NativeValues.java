@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.aerospike.client.Value;
+
+/**
+ * Values stored as native Aerospike bins without serialization. Value type is recorded as a one character marker in
+ * place of the class name, class names always have more characters.
+ * 
+ * @author Vlad Aleksandrov
+ */
+final class NativeValues {
+
+    private static final Map<Class<?>, String> MARKERS = new HashMap<>();
+    private static final Map<String, Class<?>> TYPES = new HashMap<>();
+
+    static {
+        register(String.class, "T");
+        register(byte[].class, "A");
+        register(Long.class, "J");
+        register(Integer.class, "I");
+        register(Short.class, "S");
+        register(Byte.class, "B");
+        register(Double.class, "D");
+        register(Float.class, "F");
+        register(Boolean.class, "Z");
+        register(Character.class, "C");
+    }
+
+    private NativeValues() {
+    }
+
+    private static void register(final Class<?> type, final String marker) {
+        MARKERS.put(type, marker);
+        TYPES.put(marker, type);
+    }
+
+    /**
+     * Returns type marker of the class.
+     * 
+     * @param type
+     *            value class
+     * @return type marker or <code>null</code> if values of the class are not stored natively
+     */
+    static String marker(final Class<?> type) {
+        return MARKERS.get(type);
+    }
+
+    /**
+     * Returns value class of the stored class name or type marker.
+     * 
+     * @param className
+     *            stored class name or type marker
+     * @return value class
+     */
+    static Class<?> type(final String className) throws ClassNotFoundException {
+        final Class<?> type = TYPES.get(className);
+        return type != null ? type : Class.forName(className);
+    }
+
+    static boolean isMarker(final String className) {
+        return className != null && TYPES.containsKey(className);
+    }
+
+    /**
+     * Converts the value to native bin value.
+     * 
+     * @param value
+     *            value of natively stored class
+     * @return bin value
+     */
+    static Value toValue(final Object value) {
+        if (value instanceof String || value instanceof byte[]) {
+            return Value.get(value);
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return Value.get(((Number) value).doubleValue());
+        }
+        if (value instanceof Number) {
+            return Value.get(((Number) value).longValue());
+        }
+        if (value instanceof Boolean) {
+            return Value.get((Boolean) value ? 1L : 0L);
+        }
+        return Value.get(String.valueOf((Character) value));
+    }
+
+    /**
+     * Converts stored bin value back to the value of marked type.
+     * 
+     * @param marker
+     *            type marker
+     * @param stored
+     *            stored bin value
+     * @return value
+     */
+    static Object fromValue(final String marker, final Object stored) {
+        switch (marker) {
+            case "I":
+                return ((Number) stored).intValue();
+            case "S":
+                return ((Number) stored).shortValue();
+            case "B":
+                return ((Number) stored).byteValue();
+            case "F":
+                return ((Number) stored).floatValue();
+            case "Z":
+                return ((Number) stored).longValue() != 0;
+            case "C":
+                return ((String) stored).charAt(0);
+            default:
+                return stored;
+        }
+    }
+
+}
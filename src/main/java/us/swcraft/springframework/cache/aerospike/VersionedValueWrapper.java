@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike;
+
+import org.springframework.cache.support.SimpleValueWrapper;
+
+/**
+ * Cached value holder which also provides the entry version (Aerospike record generation) for optimistic updates.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public class VersionedValueWrapper extends SimpleValueWrapper {
+
+    private final int version;
+
+    public VersionedValueWrapper(final Object value, final int version) {
+        super(value);
+        this.version = version;
+    }
+
+    /**
+     * Returns the entry version.
+     * 
+     * @return Aerospike record generation
+     */
+    public int getVersion() {
+        return version;
+    }
+
+}
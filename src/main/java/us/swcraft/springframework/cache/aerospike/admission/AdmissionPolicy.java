@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike.admission;
+
+/**
+ * Decides which values are worth persisting in the cache. Rejected values are not written to Aerospike, which saves
+ * replicated writes and index memory for values never read again.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public interface AdmissionPolicy {
+
+    /**
+     * Records a cache read of the key.
+     * 
+     * @param key
+     *            cache key
+     */
+    void recordAccess(Object key);
+
+    /**
+     * Decides whether the value should be persisted.
+     * 
+     * @param key
+     *            cache key
+     * @param serializedSize
+     *            size of serialized value in bytes, <code>-1</code> if value is not stored in serialized form
+     * @return <code>true</code> if value should be persisted
+     */
+    boolean admit(Object key, int serializedSize);
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike.admission;
+
+import us.swcraft.springframework.cache.aerospike.FrequencySketch;
+
+/**
+ * TinyLFU style admission policy. Key read frequency is estimated with a {@link FrequencySketch} and only values whose
+ * keys have been read at least min frequency times recently are admitted.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public class FrequencyAdmissionPolicy implements AdmissionPolicy {
+
+    private final int minFrequency;
+    private final FrequencySketch sketch;
+
+    /**
+     * @param minFrequency
+     *            min number of recent reads of the key to admit its value
+     */
+    public FrequencyAdmissionPolicy(final int minFrequency) {
+        this(minFrequency, 65536);
+    }
+
+    /**
+     * @param minFrequency
+     *            min number of recent reads of the key to admit its value
+     * @param expectedKeys
+     *            expected number of distinct recently read keys, defines sketch width
+     */
+    public FrequencyAdmissionPolicy(final int minFrequency, final int expectedKeys) {
+        this.minFrequency = minFrequency;
+        this.sketch = new FrequencySketch(expectedKeys);
+    }
+
+    @Override
+    public void recordAccess(final Object key) {
+        sketch.increment(key);
+    }
+
+    @Override
+    public boolean admit(final Object key, final int serializedSize) {
+        return sketch.frequency(key) >= minFrequency;
+    }
+
+}
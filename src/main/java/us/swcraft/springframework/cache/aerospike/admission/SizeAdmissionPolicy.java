@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike.admission;
+
+/**
+ * Admits values whose serialized size is within the limits. Values not stored in serialized form are always admitted.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public class SizeAdmissionPolicy implements AdmissionPolicy {
+
+    private final int minSizeInBytes;
+    private final int maxSizeInBytes;
+
+    /**
+     * @param minSizeInBytes
+     *            min serialized size, smaller values are cheaper to rebuild than to cache
+     * @param maxSizeInBytes
+     *            max serialized size, larger values are too costly to cache
+     */
+    public SizeAdmissionPolicy(final int minSizeInBytes, final int maxSizeInBytes) {
+        this.minSizeInBytes = minSizeInBytes;
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    @Override
+    public void recordAccess(final Object key) {
+        // NO-OP
+    }
+
+    @Override
+    public boolean admit(final Object key, final int serializedSize) {
+        return serializedSize < 0 || (serializedSize >= minSizeInBytes && serializedSize <= maxSizeInBytes);
+    }
+
+}
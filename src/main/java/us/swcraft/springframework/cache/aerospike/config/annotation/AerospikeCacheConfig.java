@@ -33,4 +33,115 @@ public @interface AerospikeCacheConfig {
 
     String name();
 
+    /**
+     * Versioned keyspace mode. Cache clear only bumps cache generation stored in Aerospike, entries of older
+     * generations are never read again and reclaimed by TTL. Default is <code>false</code>.
+     */
+    boolean versionedKeyspace() default false;
+
+    /**
+     * Max age of locally cached generation in versioned keyspace mode. Other nodes observe cache clear within this
+     * interval.
+     */
+    int generationRefreshIntervalInMillis() default 1000;
+
+    /**
+     * Map values mode. Maps with string keys are stored as native Aerospike maps, so single entries can be read and
+     * written without transferring the whole map. Default is <code>false</code>.
+     */
+    boolean mapValues() default false;
+
+    /**
+     * Number of bucket records entries are packed into. Packed mode saves Aerospike primary index memory for caches
+     * with many small entries. Default is <code>0</code>, packed mode is disabled.
+     */
+    int packedBuckets() default 0;
+
+    /**
+     * Serialized values larger than chunk size are split into chunk records. Should be below Aerospike namespace
+     * write block size. Default is <code>0</code>, chunking is disabled.
+     */
+    int chunkSizeInBytes() default 0;
+
+    /**
+     * Serialized values larger than max value size are not cached. Default is <code>0</code>, no limit.
+     */
+    int maxValueSizeInBytes() default 0;
+
+    /**
+     * Serialized values of dedup threshold size or larger are stored once per content and referenced by hash from
+     * cache entries. Default is <code>0</code>, deduplication is disabled.
+     */
+    int dedupThresholdInBytes() default 0;
+
+    /**
+     * Write suppression mode. Writes of values with unchanged serialized form only extend entry TTL. Default is
+     * <code>false</code>.
+     */
+    boolean writeSuppression() default false;
+
+    /**
+     * Lazy deserialization mode. Cached value is deserialized on first access to the returned value wrapper. Default
+     * is <code>false</code>.
+     */
+    boolean lazyDeserialization() default false;
+
+    /**
+     * Native values mode. Strings, byte arrays and boxed primitives are stored as native bins without serialization.
+     * Default is <code>false</code>.
+     */
+    boolean nativeValues() default false;
+
+    /**
+     * Min number of recent reads of the key for its value to be persisted, keeps values read once out of the cache.
+     * Default is <code>0</code>, all values are persisted.
+     */
+    int admissionMinFrequency() default 0;
+
+    /**
+     * Adaptive TTL lower bound. When both bounds are set, entry TTL is scaled between them by key read frequency and
+     * value load time. Default is <code>0</code>, cache TTL is used.
+     */
+    int minTimeToLiveInSeconds() default 0;
+
+    /**
+     * Adaptive TTL upper bound. Default is <code>0</code>, cache TTL is used.
+     */
+    int maxTimeToLiveInSeconds() default 0;
+
+    /**
+     * Max random deviation of entry TTL in percent, spreads expiration of entries written in a burst. Default is
+     * <code>0</code>, no jitter.
+     */
+    int ttlJitterPercent() default 0;
+
+    /**
+     * Max number of values kept in near cache. Near cached value is served after a metadata-only read confirms the
+     * stored entry generation has not changed. Default is <code>0</code>, near cache is disabled.
+     */
+    int nearCacheSize() default 0;
+
+    /**
+     * Max near cache staleness. When set, near cached values are served without validation reads and dropped on
+     * changes logged by any node to the invalidation log, polled at this interval. Default is <code>0</code>, near
+     * cached values are validated on each read.
+     */
+    int nearCacheInvalidationIntervalInMillis() default 0;
+
+    /**
+     * Number of slot records in near cache invalidation log. Default is <b>4096</b>.
+     */
+    int invalidationLogSize() default 4096;
+
+    /**
+     * Max size of Zstandard dictionary trained from serialized values of the cache. Default is <code>0</code>, values
+     * are not compressed with a dictionary.
+     */
+    int compressionDictionarySizeInBytes() default 0;
+
+    /**
+     * Number of values sampled to train compression dictionary. Default is <b>1000</b>.
+     */
+    int compressionTrainingSamples() default 1000;
+
 }
\ No newline at end of file
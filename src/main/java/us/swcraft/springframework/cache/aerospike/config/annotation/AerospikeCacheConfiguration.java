@@ -31,8 +31,13 @@ import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.core.type.AnnotationMetadata;
 import org.springframework.util.ClassUtils;
 
+import us.swcraft.springframework.cache.aerospike.AerospikeCache;
 import us.swcraft.springframework.cache.aerospike.AerospikeCacheManager;
+import us.swcraft.springframework.cache.aerospike.admission.FrequencyAdmissionPolicy;
+import us.swcraft.springframework.cache.aerospike.ttl.AdaptiveTtlPolicy;
 import us.swcraft.springframework.store.StoreCompression;
+import us.swcraft.springframework.store.compression.AdaptiveCompressor;
+import us.swcraft.springframework.store.compression.Compressors;
 import us.swcraft.springframework.store.serialization.Serializer;
 
 import com.aerospike.client.IAerospikeClient;
@@ -65,6 +70,10 @@ public class AerospikeCacheConfiguration implements ImportAware, BeanClassLoader
 
     private StoreCompression compression;
 
+    private Class<?>[] registeredClasses;
+
+    private int compressionThresholdInBytes;
+
     /**
      * Pre-configured caches.
      */
@@ -80,14 +89,51 @@ public class AerospikeCacheConfiguration implements ImportAware, BeanClassLoader
         for (AnnotationAttributes cacheConfigAttrs : cachesConfiguration) {
             final String name = cacheConfigAttrs.getString("name");
             final int timeToLiveInSeconds = cacheConfigAttrs.getNumber("timeToLiveInSeconds");
-            aerospikeCacheManager.createCache(name, timeToLiveInSeconds);
+            final AerospikeCache cache = aerospikeCacheManager.createCache(name, timeToLiveInSeconds);
+            cache.setVersionedKeyspace(cacheConfigAttrs.getBoolean("versionedKeyspace"));
+            cache.setGenerationRefreshIntervalInMillis(
+                    cacheConfigAttrs.<Integer> getNumber("generationRefreshIntervalInMillis"));
+            cache.setMapValues(cacheConfigAttrs.getBoolean("mapValues"));
+            cache.setPackedBuckets(cacheConfigAttrs.<Integer> getNumber("packedBuckets"));
+            cache.setChunkSizeInBytes(cacheConfigAttrs.<Integer> getNumber("chunkSizeInBytes"));
+            cache.setMaxValueSizeInBytes(cacheConfigAttrs.<Integer> getNumber("maxValueSizeInBytes"));
+            cache.setDedupThresholdInBytes(cacheConfigAttrs.<Integer> getNumber("dedupThresholdInBytes"));
+            cache.setWriteSuppression(cacheConfigAttrs.getBoolean("writeSuppression"));
+            cache.setLazyDeserialization(cacheConfigAttrs.getBoolean("lazyDeserialization"));
+            cache.setNativeValues(cacheConfigAttrs.getBoolean("nativeValues"));
+            final int admissionMinFrequency = cacheConfigAttrs.<Integer> getNumber("admissionMinFrequency");
+            if (admissionMinFrequency > 0) {
+                cache.setAdmissionPolicy(new FrequencyAdmissionPolicy(admissionMinFrequency));
+            }
+            final int minTimeToLiveInSeconds = cacheConfigAttrs.<Integer> getNumber("minTimeToLiveInSeconds");
+            final int maxTimeToLiveInSeconds = cacheConfigAttrs.<Integer> getNumber("maxTimeToLiveInSeconds");
+            if (minTimeToLiveInSeconds > 0 && maxTimeToLiveInSeconds > 0) {
+                cache.setTtlPolicy(new AdaptiveTtlPolicy(minTimeToLiveInSeconds, maxTimeToLiveInSeconds));
+            }
+            cache.setTtlJitterPercent(cacheConfigAttrs.<Integer> getNumber("ttlJitterPercent"));
+            cache.setNearCacheSize(cacheConfigAttrs.<Integer> getNumber("nearCacheSize"));
+            cache.setInvalidationLogSize(cacheConfigAttrs.<Integer> getNumber("invalidationLogSize"));
+            cache.setCompressionTrainingSamples(cacheConfigAttrs.<Integer> getNumber("compressionTrainingSamples"));
+            cache.setCompressionDictionarySizeInBytes(
+                    cacheConfigAttrs.<Integer> getNumber("compressionDictionarySizeInBytes"));
+            cache.setNearCacheInvalidationIntervalInMillis(
+                    cacheConfigAttrs.<Integer> getNumber("nearCacheInvalidationIntervalInMillis"));
         }
         return aerospikeCacheManager;
     }
 
     private Serializer buildSerializer() {
         try {
-            return serializerClass.getConstructor(StoreCompression.class).newInstance(compression);
+            final Serializer<?> serializer = serializerClass.getConstructor(StoreCompression.class).newInstance(
+                    compression);
+            if (registeredClasses != null && registeredClasses.length > 0) {
+                serializer.registerClasses(registeredClasses);
+            }
+            if (compressionThresholdInBytes > 0 && compression != StoreCompression.NONE) {
+                serializer.setCompressor(new AdaptiveCompressor(Compressors.forType(compression),
+                        compressionThresholdInBytes));
+            }
+            return serializer;
         } catch (InstantiationException | IllegalAccessException | IllegalArgumentException
                 | InvocationTargetException | NoSuchMethodException | SecurityException e) {
             throw new RuntimeException("Unable to build serializer " + serializerClass, e);
@@ -123,6 +169,8 @@ public class AerospikeCacheConfiguration implements ImportAware, BeanClassLoader
         defaultCacheName = enableAttrs.getString("defaultCacheName");
         compression = enableAttrs.getEnum("compression");
         serializerClass = enableAttrs.getClass("serializerClass");
+        registeredClasses = enableAttrs.getClassArray("registeredClasses");
+        compressionThresholdInBytes = enableAttrs.getNumber("compressionThresholdInBytes");
 
         cachesConfiguration = enableAttrs.getAnnotationArray("caches");
     }
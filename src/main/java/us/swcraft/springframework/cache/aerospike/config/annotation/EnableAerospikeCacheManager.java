@@ -76,11 +76,19 @@ public @interface EnableAerospikeCacheManager {
     String defaultCacheName() default "default";
 
     /**
-     * Compression applied to stored value. Default is NONE. Current supported compression is <code>SNAPPY</code>.
+     * Compression applied to stored value. Default is NONE. Current supported compressions are <code>SNAPPY</code>,
+     * <code>LZ4</code> and <code>ZSTD</code>.
      *
      */
     StoreCompression compression() default StoreCompression.NONE;
 
+    /**
+     * Adaptive compression threshold. Values serialized to fewer bytes are stored uncompressed, as are values of classes
+     * compressing poorly. Stored values get a compression flag byte, so all nodes should use the same setting. Default
+     * is <code>0</code>, all values are compressed.
+     */
+    int compressionThresholdInBytes() default 0;
+
     /**
      * Cached value serializer class implementing {@link Serializer} interface.
      * 
@@ -88,6 +96,12 @@ public @interface EnableAerospikeCacheManager {
     @SuppressWarnings("rawtypes")
     Class<? extends Serializer> serializerClass() default FSTSerializer.class;
 
+    /**
+     * Classes of cached values pre-registered in the serializer, so their names are not written with each value. All
+     * nodes sharing the caches should register the same classes in the same order.
+     */
+    Class<?>[] registeredClasses() default {};
+
     /**
      * Pre-configured caches.
      */
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike.ttl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.Assert;
+
+import us.swcraft.springframework.cache.aerospike.FrequencySketch;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Scales entry time to live between min and max bounds by key read frequency and value load time. Hot entries with
+ * expensive loaders live longest, cold entries with cheap loaders expire first. Load time is unknown for values
+ * written directly with put, such entries are scaled by read frequency only.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public class AdaptiveTtlPolicy implements TtlPolicy {
+
+    private final int minTimeToLiveInSeconds;
+    private final int maxTimeToLiveInSeconds;
+    private final int hotFrequency;
+    private final long expensiveLoadTimeInMillis;
+
+    private final FrequencySketch sketch = new FrequencySketch(65536);
+
+    /**
+     * Recent value load times, bounded to keep memory flat.
+     */
+    private final Cache<Object, Long> loadTimes = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
+
+    /**
+     * @param minTimeToLiveInSeconds
+     *            time to live of cold entries with cheap loaders
+     * @param maxTimeToLiveInSeconds
+     *            time to live of hot entries with expensive loaders
+     */
+    public AdaptiveTtlPolicy(final int minTimeToLiveInSeconds, final int maxTimeToLiveInSeconds) {
+        this(minTimeToLiveInSeconds, maxTimeToLiveInSeconds, 16, 1000);
+    }
+
+    /**
+     * @param minTimeToLiveInSeconds
+     *            time to live of cold entries with cheap loaders
+     * @param maxTimeToLiveInSeconds
+     *            time to live of hot entries with expensive loaders
+     * @param hotFrequency
+     *            number of recent reads making the key hot
+     * @param expensiveLoadTimeInMillis
+     *            value load time making the loader expensive
+     */
+    public AdaptiveTtlPolicy(final int minTimeToLiveInSeconds, final int maxTimeToLiveInSeconds,
+            final int hotFrequency, final long expensiveLoadTimeInMillis) {
+        Assert.isTrue(minTimeToLiveInSeconds > 0, "min time to live should be positive");
+        Assert.isTrue(maxTimeToLiveInSeconds >= minTimeToLiveInSeconds,
+                "max time to live should not be less than min time to live");
+        Assert.isTrue(hotFrequency > 0, "hot frequency should be positive");
+        Assert.isTrue(expensiveLoadTimeInMillis > 0, "expensive load time should be positive");
+        this.minTimeToLiveInSeconds = minTimeToLiveInSeconds;
+        this.maxTimeToLiveInSeconds = maxTimeToLiveInSeconds;
+        this.hotFrequency = hotFrequency;
+        this.expensiveLoadTimeInMillis = expensiveLoadTimeInMillis;
+    }
+
+    @Override
+    public void recordAccess(final Object key) {
+        sketch.increment(key);
+    }
+
+    @Override
+    public void recordLoad(final Object key, final long loadTimeInMillis) {
+        loadTimes.put(key, loadTimeInMillis);
+    }
+
+    @Override
+    public int timeToLive(final Object key, final int defaultTimeToLiveInSeconds) {
+        final double hotness = Math.min(1.0, (double) sketch.frequency(key) / hotFrequency);
+        final Long loadTime = loadTimes.getIfPresent(key);
+        final double weight;
+        if (loadTime == null) {
+            weight = hotness;
+        } else {
+            weight = (hotness + Math.min(1.0, (double) loadTime / expensiveLoadTimeInMillis)) / 2;
+        }
+        return minTimeToLiveInSeconds + (int) Math.round((maxTimeToLiveInSeconds - minTimeToLiveInSeconds) * weight);
+    }
+
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike.ttl;
+
+/**
+ * Cached value defining its own time to live. Time to live of such values is not extended on reads.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public interface Expirable {
+
+    /**
+     * @return entry time to live in seconds
+     */
+    int getTimeToLiveInSeconds();
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike.ttl;
+
+/**
+ * Assigns time to live to cache entries based on observed key reads and value load times.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public interface TtlPolicy {
+
+    /**
+     * Records a cache read of the key.
+     * 
+     * @param key
+     *            cache key
+     */
+    void recordAccess(Object key);
+
+    /**
+     * Records time spent to load the value of the key on cache miss.
+     * 
+     * @param key
+     *            cache key
+     * @param loadTimeInMillis
+     *            value load time
+     */
+    void recordLoad(Object key, long loadTimeInMillis);
+
+    /**
+     * Returns time to live for the entry on write or read.
+     * 
+     * @param key
+     *            cache key
+     * @param defaultTimeToLiveInSeconds
+     *            cache time to live
+     * @return entry time to live in seconds
+     */
+    int timeToLive(Object key, int defaultTimeToLiveInSeconds);
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike.ttl;
+
+/**
+ * Resolves time to live of the entry on write from its key or value. Resolved time to live is not extended on reads.
+ * 
+ * @author Vlad Aleksandrov
+ */
+@FunctionalInterface
+public interface TtlResolver {
+
+    /**
+     * Returns time to live for the entry.
+     * 
+     * @param key
+     *            cache key
+     * @param value
+     *            cached value, may be <code>null</code>
+     * @param defaultTimeToLiveInSeconds
+     *            cache time to live, or the one of {@link Expirable} value
+     * @return entry time to live in seconds
+     */
+    int timeToLive(Object key, Object value, int defaultTimeToLiveInSeconds);
+
+}
@@ -22,6 +22,8 @@ package us.swcraft.springframework.store;
 public enum StoreCompression {
     
     NONE,
-    SNAPPY;
+    SNAPPY,
+    LZ4,
+    ZSTD;
 
 }
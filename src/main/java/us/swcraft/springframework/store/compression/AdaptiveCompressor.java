@@ -0,0 +1,214 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * Compressor skipping values not worth compressing. Values smaller than the threshold are stored raw, as are values
+ * of classes whose average compression ratio is poor, which are only sampled from time to time. Each value is
+ * preceded by a header telling whether it is compressed. Values without the header were written by the wrapped
+ * compressor alone and are decompressed by it, so adaptive compression can be enabled over existing data.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public class AdaptiveCompressor implements Compressor {
+
+    /**
+     * Header magic, no LZ4, Snappy or Zstandard output starts with it: LZ4 blocks start with a non-negative length,
+     * framed Snappy with 0xFF, Zstandard frames with 0x28, and Snappy blocks with a length varint which can't have its
+     * 5th byte above 0x0F, as the flag following the magic is.
+     */
+    private static final byte[] MAGIC = { (byte) 0xA3, (byte) 0xDA, (byte) 0x9C, (byte) 0xC5 };
+    private static final int HEADER_LENGTH = MAGIC.length + 1;
+
+    private static final byte RAW = 'R';
+    private static final byte COMPRESSED = 'C';
+
+    private static final double DEFAULT_MAX_RATIO = 0.9;
+
+    /**
+     * Number of values compressed before the class ratio is trusted, also weight of the running average.
+     */
+    private static final int MIN_SAMPLES = 16;
+
+    /**
+     * Every n-th value of a poorly compressing class is still compressed to follow changes of its ratio.
+     */
+    private static final int SAMPLE_INTERVAL = 64;
+
+    private static final int MAX_TRACKED_CLASSES = 1024;
+
+    private final Compressor compressor;
+    private final int thresholdInBytes;
+    private final double maxRatio;
+
+    private final ConcurrentMap<Class<?>, CompressionRatio> ratios = new ConcurrentHashMap<>();
+
+    /**
+     * @param compressor
+     *            compressor of values worth compressing
+     * @param thresholdInBytes
+     *            min size of compressed value
+     */
+    public AdaptiveCompressor(final Compressor compressor, final int thresholdInBytes) {
+        this(compressor, thresholdInBytes, DEFAULT_MAX_RATIO);
+    }
+
+    /**
+     * @param compressor
+     *            compressor of values worth compressing
+     * @param thresholdInBytes
+     *            min size of compressed value
+     * @param maxRatio
+     *            max average ratio of compressed to raw size for values of a class to be compressed
+     */
+    public AdaptiveCompressor(final Compressor compressor, final int thresholdInBytes, final double maxRatio) {
+        Assert.notNull(compressor, "compressor can't be null");
+        Assert.isTrue(thresholdInBytes >= 0, "threshold can't be negative");
+        Assert.isTrue(maxRatio > 0, "max compression ratio should be positive");
+        this.compressor = compressor;
+        this.thresholdInBytes = thresholdInBytes;
+        this.maxRatio = maxRatio;
+    }
+
+    @Override
+    public byte[] compress(final byte[] bytes, final int offset, final int length) throws IOException {
+        return compress(null, bytes, offset, length);
+    }
+
+    @Override
+    public byte[] compress(final Class<?> type, final byte[] bytes, final int offset, final int length)
+            throws IOException {
+        if (length < thresholdInBytes) {
+            return raw(bytes, offset, length);
+        }
+        final CompressionRatio ratio = type == null ? null : ratioOf(type);
+        if (ratio != null && ratio.getSamples() >= MIN_SAMPLES && ratio.get() > maxRatio
+                && ratio.skip() % SAMPLE_INTERVAL != 0) {
+            return raw(bytes, offset, length);
+        }
+        final byte[] compressed = compressor.compress(bytes, offset, length);
+        if (ratio != null) {
+            ratio.record(length, compressed.length);
+        }
+        if (compressed.length >= length) {
+            return raw(bytes, offset, length);
+        }
+        return flagged(COMPRESSED, compressed, 0, compressed.length);
+    }
+
+    @Override
+    public byte[] decompress(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (!hasHeader(bytes, offset, length)) {
+            // written before adaptive compression was enabled
+            return compressor.decompress(bytes, offset, length);
+        }
+        final byte flag = bytes[offset + MAGIC.length];
+        switch (flag) {
+            case RAW:
+                return Arrays.copyOfRange(bytes, offset + HEADER_LENGTH, offset + length);
+            case COMPRESSED:
+                return compressor.decompress(bytes, offset + HEADER_LENGTH, length - HEADER_LENGTH);
+            default:
+                throw new IOException("Unknown compression flag " + flag);
+        }
+    }
+
+    /**
+     * Returns average ratio of compressed to raw size of sampled values per class.
+     * 
+     * @return compression ratios by class name
+     */
+    public Map<String, Double> getCompressionRatios() {
+        final Map<String, Double> result = new TreeMap<>();
+        for (Map.Entry<Class<?>, CompressionRatio> entry : ratios.entrySet()) {
+            if (entry.getValue().getSamples() > 0) {
+                result.put(entry.getKey().getName(), entry.getValue().get());
+            }
+        }
+        return result;
+    }
+
+    private CompressionRatio ratioOf(final Class<?> type) {
+        final CompressionRatio ratio = ratios.get(type);
+        if (ratio != null || ratios.size() >= MAX_TRACKED_CLASSES) {
+            return ratio;
+        }
+        return ratios.computeIfAbsent(type, t -> new CompressionRatio());
+    }
+
+    private static byte[] raw(final byte[] bytes, final int offset, final int length) {
+        return flagged(RAW, bytes, offset, length);
+    }
+
+    private static byte[] flagged(final byte flag, final byte[] bytes, final int offset, final int length) {
+        final byte[] flagged = new byte[length + HEADER_LENGTH];
+        System.arraycopy(MAGIC, 0, flagged, 0, MAGIC.length);
+        flagged[MAGIC.length] = flag;
+        System.arraycopy(bytes, offset, flagged, HEADER_LENGTH, length);
+        return flagged;
+    }
+
+    private static boolean hasHeader(final byte[] bytes, final int offset, final int length) {
+        if (length < HEADER_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[offset + i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Running average of compression ratio, concurrent updates may be lost.
+     */
+    private static final class CompressionRatio {
+
+        private final AtomicLong samples = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private volatile double ratio;
+
+        void record(final int rawLength, final int compressedLength) {
+            final double sample = (double) compressedLength / Math.max(rawLength, 1);
+            final long n = samples.incrementAndGet();
+            ratio += (sample - ratio) / Math.min(n, MIN_SAMPLES);
+        }
+
+        long skip() {
+            return skipped.incrementAndGet();
+        }
+
+        long getSamples() {
+            return samples.get();
+        }
+
+        double get() {
+            return ratio;
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.compression;
+
+import java.io.IOException;
+
+/**
+ * Compressor of whole serialized values.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public interface Compressor {
+
+    /**
+     * Compresses given range of bytes.
+     * 
+     * @param bytes
+     *            array holding uncompressed bytes
+     * @param offset
+     *            start of uncompressed bytes
+     * @param length
+     *            number of uncompressed bytes
+     * @return compressed bytes
+     */
+    byte[] compress(byte[] bytes, int offset, int length) throws IOException;
+
+    /**
+     * Compresses given range of bytes holding serialized value of the class. Compressors adapting to value classes
+     * override it.
+     * 
+     * @param type
+     *            serialized value class
+     * @param bytes
+     *            array holding uncompressed bytes
+     * @param offset
+     *            start of uncompressed bytes
+     * @param length
+     *            number of uncompressed bytes
+     * @return compressed bytes
+     */
+    default byte[] compress(final Class<?> type, final byte[] bytes, final int offset, final int length)
+            throws IOException {
+        return compress(bytes, offset, length);
+    }
+
+    /**
+     * Decompresses given range of bytes.
+     * 
+     * @param bytes
+     *            array holding compressed bytes
+     * @param offset
+     *            start of compressed bytes
+     * @param length
+     *            number of compressed bytes
+     * @return uncompressed bytes
+     */
+    byte[] decompress(byte[] bytes, int offset, int length) throws IOException;
+
+}
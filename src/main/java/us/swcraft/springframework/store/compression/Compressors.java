@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.compression;
+
+import us.swcraft.springframework.store.StoreCompression;
+
+/**
+ * Factory of compressors shared by serializers.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public final class Compressors {
+
+    private static final Compressor NONE = new NoCompressor();
+    private static final Compressor SNAPPY = new SnappyCompressor();
+    private static final Compressor LZ4 = new Lz4Compressor();
+    private static final Compressor ZSTD = new ZstdCompressor();
+
+    private Compressors() {
+    }
+
+    /**
+     * Returns compressor of given compression type. Compressors are thread-safe.
+     * 
+     * @param compressionType
+     *            compression type
+     * @return compressor
+     */
+    public static Compressor forType(final StoreCompression compressionType) {
+        switch (compressionType) {
+            case SNAPPY:
+                return SNAPPY;
+            case LZ4:
+                return LZ4;
+            case ZSTD:
+                return ZSTD;
+            default:
+                return NONE;
+        }
+    }
+
+}
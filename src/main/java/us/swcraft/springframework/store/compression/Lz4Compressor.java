@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+
+/**
+ * LZ4 block compressor. Compressed block is preceded by uncompressed length, so the whole value is decompressed in one
+ * call into exactly sized array.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public class Lz4Compressor implements Compressor {
+
+    private static final int LENGTH_BYTES = 4;
+
+    /**
+     * Native or unsafe implementation if available.
+     */
+    private final LZ4Factory factory = LZ4Factory.fastestInstance();
+
+    @Override
+    public byte[] compress(final byte[] bytes, final int offset, final int length) {
+        final LZ4Compressor compressor = factory.fastCompressor();
+        final byte[] compressed = new byte[LENGTH_BYTES + compressor.maxCompressedLength(length)];
+        writeLength(compressed, length);
+        final int compressedLength = compressor.compress(bytes, offset, length, compressed, LENGTH_BYTES,
+                compressed.length - LENGTH_BYTES);
+        return Arrays.copyOf(compressed, LENGTH_BYTES + compressedLength);
+    }
+
+    @Override
+    public byte[] decompress(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (length < LENGTH_BYTES) {
+            throw new IOException("LZ4 block too short: " + length);
+        }
+        final int uncompressedLength = readLength(bytes, offset);
+        // LZ4 can't expand data more than 255 times
+        if (uncompressedLength < 0 || uncompressedLength > (long) (length - LENGTH_BYTES) * 255 + 16) {
+            throw new IOException("Invalid LZ4 block length: " + uncompressedLength);
+        }
+        final byte[] uncompressed = new byte[uncompressedLength];
+        try {
+            final int written = factory.safeDecompressor().decompress(bytes, offset + LENGTH_BYTES,
+                    length - LENGTH_BYTES, uncompressed, 0, uncompressedLength);
+            if (written != uncompressedLength) {
+                throw new IOException("LZ4 block decompressed to " + written + " of " + uncompressedLength + " bytes");
+            }
+        } catch (LZ4Exception e) {
+            throw new IOException("Malformed LZ4 block", e);
+        }
+        return uncompressed;
+    }
+
+    private static void writeLength(final byte[] bytes, final int length) {
+        bytes[0] = (byte) (length >>> 24);
+        bytes[1] = (byte) (length >>> 16);
+        bytes[2] = (byte) (length >>> 8);
+        bytes[3] = (byte) length;
+    }
+
+    private static int readLength(final byte[] bytes, final int offset) {
+        return (bytes[offset] & 0xFF) << 24 | (bytes[offset + 1] & 0xFF) << 16 | (bytes[offset + 2] & 0xFF) << 8
+                | bytes[offset + 3] & 0xFF;
+    }
+
+}
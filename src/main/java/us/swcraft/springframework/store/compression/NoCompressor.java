@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.compression;
+
+import java.util.Arrays;
+
+/**
+ * Keeps bytes as is.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public class NoCompressor implements Compressor {
+
+    @Override
+    public byte[] compress(final byte[] bytes, final int offset, final int length) {
+        return Arrays.copyOfRange(bytes, offset, offset + length);
+    }
+
+    @Override
+    public byte[] decompress(final byte[] bytes, final int offset, final int length) {
+        return Arrays.copyOfRange(bytes, offset, offset + length);
+    }
+
+}
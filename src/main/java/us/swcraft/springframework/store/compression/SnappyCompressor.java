@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.iq80.snappy.CorruptionException;
+import org.iq80.snappy.Snappy;
+
+/**
+ * Snappy block compressor working on the whole value without stream framing and checksums. Values written in the
+ * framed stream format are still read.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public class SnappyCompressor implements Compressor {
+
+    /**
+     * Stream identifier chunk starting every framed stream.
+     */
+    private static final byte[] FRAMED_STREAM_HEADER = { (byte) 0xff, 0x06, 0x00, 0x00, 's', 'N', 'a', 'P', 'p', 'Y' };
+
+    /**
+     * Snappy can't expand data more than this number of times.
+     */
+    private static final int MAX_EXPANSION = 32;
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Per-thread reusable compression buffers.
+     */
+    private final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[INITIAL_BUFFER_SIZE]);
+
+    private final SnappyFramedCompressor framed = new SnappyFramedCompressor();
+
+    @Override
+    public byte[] compress(final byte[] bytes, final int offset, final int length) {
+        final int maxLength = Snappy.maxCompressedLength(length);
+        byte[] buffer = buffers.get();
+        if (buffer.length < maxLength) {
+            buffer = new byte[maxLength];
+            if (maxLength <= MAX_RETAINED_BUFFER_SIZE) {
+                buffers.set(buffer);
+            }
+        }
+        final int compressedLength = Snappy.compress(bytes, offset, length, buffer, 0);
+        return Arrays.copyOf(buffer, compressedLength);
+    }
+
+    @Override
+    public byte[] decompress(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (isFramed(bytes, offset, length)) {
+            return framed.decompress(bytes, offset, length);
+        }
+        try {
+            final int uncompressedLength = Snappy.getUncompressedLength(bytes, offset);
+            if (uncompressedLength < 0 || uncompressedLength > (long) length * MAX_EXPANSION) {
+                throw new IOException("Invalid Snappy block length: " + uncompressedLength);
+            }
+            final byte[] uncompressed = new byte[uncompressedLength];
+            Snappy.uncompress(bytes, offset, length, uncompressed, 0);
+            return uncompressed;
+        } catch (CorruptionException e) {
+            throw new IOException("Malformed Snappy block", e);
+        }
+    }
+
+    private static boolean isFramed(final byte[] bytes, final int offset, final int length) {
+        if (length < FRAMED_STREAM_HEADER.length) {
+            return false;
+        }
+        for (int i = 0; i < FRAMED_STREAM_HEADER.length; i++) {
+            if (bytes[offset + i] != FRAMED_STREAM_HEADER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
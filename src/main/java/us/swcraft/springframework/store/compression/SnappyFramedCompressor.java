@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.iq80.snappy.SnappyFramedInputStream;
+import org.iq80.snappy.SnappyFramedOutputStream;
+
+/**
+ * Snappy compressor writing framed stream format.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public class SnappyFramedCompressor implements Compressor {
+
+    @Override
+    public byte[] compress(final byte[] bytes, final int offset, final int length) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(length);
+        try (final OutputStream compressionOutputStream = new SnappyFramedOutputStream(outputStream)) {
+            compressionOutputStream.write(bytes, offset, length);
+        }
+        return outputStream.toByteArray();
+    }
+
+    @Override
+    public byte[] decompress(final byte[] bytes, final int offset, final int length) throws IOException {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(length * 2);
+        try (final InputStream is = new SnappyFramedInputStream(new ByteArrayInputStream(bytes, offset, length),
+                false)) {
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+            }
+        }
+        return outputStream.toByteArray();
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.github.luben.zstd.Zstd;
+
+/**
+ * Zstandard compressor writing one frame per value with uncompressed size in the frame header.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public class ZstdCompressor implements Compressor {
+
+    private static final int DEFAULT_LEVEL = 3;
+
+    private final int level;
+
+    public ZstdCompressor() {
+        this(DEFAULT_LEVEL);
+    }
+
+    /**
+     * @param level
+     *            compression level
+     */
+    public ZstdCompressor(final int level) {
+        this.level = level;
+    }
+
+    @Override
+    public byte[] compress(final byte[] bytes, final int offset, final int length) throws IOException {
+        final byte[] compressed = new byte[(int) Zstd.compressBound(length)];
+        final long compressedLength = Zstd.compressByteArray(compressed, 0, compressed.length, bytes, offset, length,
+                level);
+        if (Zstd.isError(compressedLength)) {
+            throw new IOException("Zstandard compression failed: " + Zstd.getErrorName(compressedLength));
+        }
+        return Arrays.copyOf(compressed, (int) compressedLength);
+    }
+
+    @Override
+    public byte[] decompress(final byte[] bytes, final int offset, final int length) throws IOException {
+        final long uncompressedLength = Zstd.getFrameContentSize(bytes, offset, length);
+        if (uncompressedLength < 0 || uncompressedLength > Integer.MAX_VALUE - 8) {
+            throw new IOException("Invalid Zstandard frame content size: " + uncompressedLength);
+        }
+        final byte[] uncompressed = new byte[(int) uncompressedLength];
+        final long written = Zstd.decompressByteArray(uncompressed, 0, uncompressed.length, bytes, offset, length);
+        if (Zstd.isError(written)) {
+            throw new IOException("Malformed Zstandard frame: " + Zstd.getErrorName(written));
+        }
+        if (written != uncompressedLength) {
+            throw new IOException("Zstandard frame decompressed to " + written + " of " + uncompressedLength
+                    + " bytes");
+        }
+        return uncompressed;
+    }
+
+}
@@ -15,10 +15,13 @@
  */
 package us.swcraft.springframework.store.persistence;
 
+import java.util.List;
 import java.util.Set;
 
 import com.aerospike.client.Bin;
+import com.aerospike.client.Operation;
 import com.aerospike.client.Record;
+import com.aerospike.client.exp.Expression;
 import com.aerospike.client.query.IndexType;
 
 /**
@@ -41,6 +44,45 @@ public interface AerospikeOperations<K> {
      */
     void deleteAll();
 
+    /**
+     * Removes all records from set matching the filter expression.
+     * 
+     * @param filter
+     *            filter expression records are matched by
+     */
+    void deleteAll(Expression filter);
+
+    /**
+     * Removes all records from set matching the filter expression. Records are deleted by a server-side background
+     * operation, no data is transferred to the client. Returns once the operation has been started.
+     * 
+     * @param filter
+     *            filter expression records to delete should match
+     */
+    void deleteWhere(Expression filter);
+
+    /**
+     * Removes all records from set matching the filter expression by a server-side background operation.
+     * 
+     * @param filter
+     *            filter expression records to delete should match
+     * @param waitTillComplete
+     *            <code>true</code> to return once all matching records are deleted, <code>false</code> to return once
+     *            the operation has been started
+     */
+    void deleteWhere(Expression filter, boolean waitTillComplete);
+
+    /**
+     * Performs operations on all records in set matching the filter expression by a server-side background
+     * operation. Returns once the operation has been started.
+     * 
+     * @param filter
+     *            filter expression records should match, <code>null</code> to match all records
+     * @param operations
+     *            write operations to perform on each record
+     */
+    void operateAll(Expression filter, Operation... operations);
+
     /**
      * Persists a single bin in record.
      * 
@@ -49,6 +91,16 @@ public interface AerospikeOperations<K> {
      */
     void persist(K key, Bin value);
 
+    /**
+     * Persists a single bin in record with the record expiration.
+     * 
+     * @param key
+     * @param value
+     * @param expiration
+     *            record expiration in seconds
+     */
+    void persist(K key, Bin value, int expiration);
+
     /**
      * Persists a single bin in record only if record does not exist. Fails if record exists.
      * 
@@ -57,6 +109,17 @@ public interface AerospikeOperations<K> {
      */
     void persistIfAbsent(K key, Bin value);
 
+    /**
+     * Persists a single bin in record with the record expiration only if record does not exist.
+     * 
+     * @param key
+     * @param value
+     * @param expiration
+     *            record expiration in seconds
+     * @return <code>true</code> if record has been persisted, <code>false</code> if record exists
+     */
+    boolean persistIfAbsent(K key, Bin value, int expiration);
+
     /**
      * Persists multiple bins in the record.
      * 
@@ -65,6 +128,16 @@ public interface AerospikeOperations<K> {
      */
     void persist(K key, Set<Bin> data);
 
+    /**
+     * Persists multiple bins in the record with the record expiration.
+     * 
+     * @param key
+     * @param data
+     * @param expiration
+     *            record expiration in seconds
+     */
+    void persist(K key, Set<Bin> data, int expiration);
+
     /**
      * Persists multiple bins in the record only if record does not exist. Fails if record exists.
      * 
@@ -73,10 +146,190 @@ public interface AerospikeOperations<K> {
      */
     void persistIfAbsent(K key, Set<Bin> data);
 
+    /**
+     * Persists multiple bins in the record only if existing record matches the filter expression.
+     * 
+     * @param key
+     * @param data
+     * @param filter
+     *            filter expression existing record should match
+     * @return <code>true</code> if record has been persisted, <code>false</code> if record has been filtered out
+     */
+    boolean persist(K key, Set<Bin> data, Expression filter);
+
+    /**
+     * Persists multiple bins in the record with the record expiration only if existing record matches the filter
+     * expression.
+     * 
+     * @param key
+     * @param data
+     * @param filter
+     *            filter expression existing record should match
+     * @param expiration
+     *            record expiration in seconds
+     * @return <code>true</code> if record has been persisted, <code>false</code> if record has been filtered out
+     */
+    boolean persist(K key, Set<Bin> data, Expression filter, int expiration);
+
+    /**
+     * Persists multiple bins in the record only if record generation matches the expected one. Generation
+     * <code>0</code> expects the record to be absent.
+     * 
+     * @param key
+     * @param data
+     * @param expectedGeneration
+     *            record generation the record should have, <code>0</code> if record should not exist
+     * @return <code>true</code> if record has been persisted, <code>false</code> on generation mismatch
+     */
+    boolean persistIfGeneration(K key, Set<Bin> data, int expectedGeneration);
+
+    /**
+     * Persists multiple bins in the record with the record expiration only if record generation matches the expected
+     * one. Generation <code>0</code> expects the record to be absent.
+     * 
+     * @param key
+     * @param data
+     * @param expectedGeneration
+     *            record generation the record should have, <code>0</code> if record should not exist
+     * @param expiration
+     *            record expiration in seconds
+     * @return <code>true</code> if record has been persisted, <code>false</code> on generation mismatch
+     */
+    boolean persistIfGeneration(K key, Set<Bin> data, int expectedGeneration, int expiration);
+
+    /**
+     * Fetches record. Returned record also provides record generation for generation-aware writes.
+     * 
+     * @param key
+     * @return record or <code>null</code> if record does not exist
+     */
     Record fetch(K key);
+
+    /**
+     * Fetches record metadata only, bins are not transferred.
+     * 
+     * @param key
+     * @return record with generation and expiration or <code>null</code> if record does not exist
+     */
+    Record fetchHeader(K key);
+
+    /**
+     * Fetches selected bins of the record.
+     * 
+     * @param key
+     * @param binNames
+     *            bins to fetch
+     * @return record or <code>null</code> if record does not exist
+     */
+    Record fetch(K key, String... binNames);
+
+    /**
+     * Fetches multiple records in a single batch request. Nodes holding the records are queried in parallel.
+     * 
+     * @param keys
+     * @return records in the order of keys, missing records are <code>null</code>
+     */
+    Record[] fetch(List<K> keys);
+
+    /**
+     * Atomically adds delta to integer bin value and returns the new value in a single operation. Missing record or
+     * bin is created with delta as initial value.
+     * 
+     * @param key
+     * @param binName
+     *            integer bin name
+     * @param delta
+     *            value to add
+     * @param expiration
+     *            record expiration in seconds applied on write
+     * @return bin value after increment
+     */
+    long increment(K key, String binName, long delta, int expiration);
+
+    /**
+     * Atomically adds delta to integer bin value and returns the new value. Default expiration is applied on write.
+     * 
+     * @param key
+     * @param binName
+     *            integer bin name
+     * @param delta
+     *            value to add
+     * @return bin value after increment
+     */
+    long increment(K key, String binName, long delta);
+
+    /**
+     * Reads integer bin value.
+     * 
+     * @param key
+     * @param binName
+     *            integer bin name
+     * @return bin value or <code>0</code> if record or bin does not exist
+     */
+    long getCounter(K key, String binName);
+
+    /**
+     * Performs multiple read/write operations on a single record in one request.
+     * 
+     * @param key
+     * @param expiration
+     *            record expiration in seconds applied on write
+     * @param operations
+     *            operations to perform
+     * @return record with results of read operations
+     */
+    Record operate(K key, int expiration, Operation... operations);
+
+    /**
+     * Performs multiple read/write operations on a single record in one request only if existing record matches the
+     * filter expression.
+     * 
+     * @param key
+     * @param filter
+     *            filter expression existing record should match
+     * @param expiration
+     *            record expiration in seconds applied on write
+     * @param operations
+     *            operations to perform
+     * @return record with results of read operations or <code>null</code> if record has been filtered out
+     */
+    Record operate(K key, Expression filter, int expiration, Operation... operations);
     
     void touch(K key);
 
+    /**
+     * Resets record expiration.
+     * 
+     * @param key
+     * @param expiration
+     *            record expiration in seconds
+     */
+    void touch(K key, int expiration);
+
+    /**
+     * Resets record expiration to default one only if record matches the filter expression.
+     * 
+     * @param key
+     * @param filter
+     *            filter expression record should match
+     * @return <code>true</code> if record has been touched, <code>false</code> if record is missing or has been
+     *         filtered out
+     */
+    boolean touch(K key, Expression filter);
+
+    /**
+     * Resets record expiration only if record matches the filter expression.
+     * 
+     * @param key
+     * @param filter
+     *            filter expression record should match
+     * @param expiration
+     *            record expiration in seconds
+     * @return <code>true</code> if record has been touched, <code>false</code> if record is missing or has been
+     *         filtered out
+     */
+    boolean touch(K key, Expression filter, int expiration);
+
     /**
      * Creates secondary index.
      * 
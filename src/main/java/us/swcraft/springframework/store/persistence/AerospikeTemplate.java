@@ -16,6 +16,7 @@
 package us.swcraft.springframework.store.persistence;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.slf4j.Logger;
@@ -25,9 +26,14 @@ import org.springframework.util.Assert;
 import com.aerospike.client.AerospikeException;
 import com.aerospike.client.Bin;
 import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
 import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
 import com.aerospike.client.ScanCallback;
+import com.aerospike.client.exp.Expression;
+import com.aerospike.client.policy.BatchPolicy;
 import com.aerospike.client.policy.CommitLevel;
+import com.aerospike.client.policy.GenerationPolicy;
 import com.aerospike.client.policy.Policy;
 import com.aerospike.client.policy.RecordExistsAction;
 import com.aerospike.client.policy.ScanPolicy;
@@ -36,6 +42,7 @@ import com.aerospike.client.query.Filter;
 import com.aerospike.client.query.IndexType;
 import com.aerospike.client.query.RecordSet;
 import com.aerospike.client.query.Statement;
+import com.aerospike.client.task.ExecuteTask;
 import com.aerospike.client.task.IndexTask;
 
 /**
@@ -72,6 +79,7 @@ public class AerospikeTemplate extends AerospikeAccessor implements AerospikeOpe
     private WritePolicy writePolicyCommitMaster;
     private WritePolicy writePolicyCreateOnly;
     private Policy readPolicy;
+    private BatchPolicy batchPolicy;
 
     public void init() {
         Assert.hasLength(namespace, "Aerospike 'namespace' name is not configured");
@@ -100,6 +108,11 @@ public class AerospikeTemplate extends AerospikeAccessor implements AerospikeOpe
 
         readPolicy = new Policy();
         readPolicy.totalTimeout = 2000;
+
+        batchPolicy = new BatchPolicy();
+        batchPolicy.totalTimeout = 2000;
+        // query all nodes in parallel
+        batchPolicy.maxConcurrentThreads = 0;
     }
 
     /**
@@ -133,11 +146,19 @@ public class AerospikeTemplate extends AerospikeAccessor implements AerospikeOpe
 
     @Override
     public void persist(final String key, final Bin bin) {
+        persist(key, bin, expiration);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void persist(final String key, final Bin bin, final int expiration) {
         log.trace("persist {} bin in record key {}", bin, key);
         Assert.notNull(key, "key can't be null");
         final Key recordKey = new Key(namespace, setname, key);
         Assert.notNull(bin, "bin can't be null");
-        getAerospikeClient().put(writePolicyUpdate, recordKey, bin);
+        getAerospikeClient().put(writePolicyUpdate(expiration), recordKey, bin);
     }
 
     @Override
@@ -149,13 +170,44 @@ public class AerospikeTemplate extends AerospikeAccessor implements AerospikeOpe
         getAerospikeClient().put(writePolicyCreateOnly, recordKey, bin);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean persistIfAbsent(final String key, final Bin bin, final int expiration) {
+        log.trace("persist {} bin in record key {}", bin, key);
+        Assert.notNull(key, "key can't be null");
+        final Key recordKey = new Key(namespace, setname, key);
+        Assert.notNull(bin, "bin can't be null");
+        final WritePolicy policy = new WritePolicy(writePolicyCreateOnly);
+        policy.expiration = expiration;
+        try {
+            getAerospikeClient().put(policy, recordKey, bin);
+            return true;
+        } catch (AerospikeException e) {
+            if (e.getResultCode() == ResultCode.KEY_EXISTS_ERROR) {
+                log.trace("record key {} exists on persist", key);
+                return false;
+            }
+            throw e;
+        }
+    }
+
     @Override
     public void persist(final String key, final Set<Bin> bins) {
+        persist(key, bins, expiration);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void persist(final String key, final Set<Bin> bins, final int expiration) {
         Assert.notNull(key, "key can't be null");
         final Key recordKey = new Key(namespace, setname, key);
         Assert.notNull(bins, "bins can't be null");
         Assert.notEmpty(bins, "bins should have data to store");
-        getAerospikeClient().put(writePolicyUpdate, recordKey, bins.toArray(BIN_ARRAY_TYPE));
+        getAerospikeClient().put(writePolicyUpdate(expiration), recordKey, bins.toArray(BIN_ARRAY_TYPE));
     }
 
     @Override
@@ -167,6 +219,85 @@ public class AerospikeTemplate extends AerospikeAccessor implements AerospikeOpe
         getAerospikeClient().put(writePolicyCreateOnly, recordKey, bins.toArray(BIN_ARRAY_TYPE));
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean persist(final String key, final Set<Bin> bins, final Expression filter) {
+        return persist(key, bins, filter, expiration);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean persist(final String key, final Set<Bin> bins, final Expression filter, final int expiration) {
+        Assert.notNull(key, "key can't be null");
+        final Key recordKey = new Key(namespace, setname, key);
+        Assert.notNull(bins, "bins can't be null");
+        Assert.notEmpty(bins, "bins should have data to store");
+        Assert.notNull(filter, "filter can't be null");
+        final WritePolicy policy = new WritePolicy(writePolicyUpdate);
+        policy.expiration = expiration;
+        policy.filterExp = filter;
+        policy.failOnFilteredOut = true;
+        try {
+            getAerospikeClient().put(policy, recordKey, bins.toArray(BIN_ARRAY_TYPE));
+            return true;
+        } catch (AerospikeException e) {
+            if (e.getResultCode() == ResultCode.FILTERED_OUT) {
+                log.trace("record key {} filtered out on persist", key);
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean persistIfGeneration(final String key, final Set<Bin> bins, final int expectedGeneration) {
+        return persistIfGeneration(key, bins, expectedGeneration, expiration);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean persistIfGeneration(final String key, final Set<Bin> bins, final int expectedGeneration,
+            final int expiration) {
+        Assert.notNull(key, "key can't be null");
+        final Key recordKey = new Key(namespace, setname, key);
+        Assert.notNull(bins, "bins can't be null");
+        Assert.notEmpty(bins, "bins should have data to store");
+        final WritePolicy policy;
+        if (expectedGeneration == 0) {
+            policy = new WritePolicy(writePolicyCreateOnly);
+        } else {
+            policy = new WritePolicy(writePolicyUpdate);
+            policy.recordExistsAction = RecordExistsAction.UPDATE_ONLY;
+            policy.generationPolicy = GenerationPolicy.EXPECT_GEN_EQUAL;
+            policy.generation = expectedGeneration;
+        }
+        policy.expiration = expiration;
+        try {
+            getAerospikeClient().put(policy, recordKey, bins.toArray(BIN_ARRAY_TYPE));
+            return true;
+        } catch (AerospikeException e) {
+            switch (e.getResultCode()) {
+                case ResultCode.GENERATION_ERROR:
+                case ResultCode.KEY_EXISTS_ERROR:
+                case ResultCode.KEY_NOT_FOUND_ERROR:
+                    log.trace("record key {} generation {} does not match: {}", key, expectedGeneration,
+                            e.getMessage());
+                    return false;
+                default:
+                    throw e;
+            }
+        }
+    }
+
     @Override
     public Record fetch(final String key) {
         Assert.notNull(key, "key can't be null");
@@ -174,6 +305,111 @@ public class AerospikeTemplate extends AerospikeAccessor implements AerospikeOpe
         return getAerospikeClient().get(readPolicy, recordKey);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Record fetchHeader(final String key) {
+        Assert.notNull(key, "key can't be null");
+        final Key recordKey = new Key(namespace, setname, key);
+        return getAerospikeClient().getHeader(readPolicy, recordKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Record fetch(final String key, final String... binNames) {
+        Assert.notNull(key, "key can't be null");
+        Assert.notEmpty(binNames, "bin names can't be empty");
+        final Key recordKey = new Key(namespace, setname, key);
+        return getAerospikeClient().get(readPolicy, recordKey, binNames);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Record[] fetch(final List<String> keys) {
+        Assert.notNull(keys, "keys can't be null");
+        final Key[] recordKeys = new Key[keys.size()];
+        for (int i = 0; i < recordKeys.length; i++) {
+            Assert.notNull(keys.get(i), "key can't be null");
+            recordKeys[i] = new Key(namespace, setname, keys.get(i));
+        }
+        return getAerospikeClient().get(batchPolicy, recordKeys);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long increment(final String key, final String binName, final long delta, final int expiration) {
+        log.trace("increment {} bin in record key {} by {}", binName, key, delta);
+        Assert.notNull(binName, "bin name can't be null");
+        final Record record = operate(key, expiration, Operation.add(new Bin(binName, delta)),
+                Operation.get(binName));
+        return record.getLong(binName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long increment(final String key, final String binName, final long delta) {
+        return increment(key, binName, delta, expiration);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getCounter(final String key, final String binName) {
+        Assert.notNull(key, "key can't be null");
+        Assert.notNull(binName, "bin name can't be null");
+        final Key recordKey = new Key(namespace, setname, key);
+        final Record record = getAerospikeClient().get(readPolicy, recordKey, binName);
+        return record == null ? 0 : record.getLong(binName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Record operate(final String key, final int expiration, final Operation... operations) {
+        Assert.notNull(key, "key can't be null");
+        Assert.notEmpty(operations, "operations can't be empty");
+        final Key recordKey = new Key(namespace, setname, key);
+        final WritePolicy policy = new WritePolicy(writePolicyUpdate);
+        policy.expiration = expiration;
+        return getAerospikeClient().operate(policy, recordKey, operations);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Record operate(final String key, final Expression filter, final int expiration,
+            final Operation... operations) {
+        Assert.notNull(key, "key can't be null");
+        Assert.notNull(filter, "filter can't be null");
+        Assert.notEmpty(operations, "operations can't be empty");
+        final Key recordKey = new Key(namespace, setname, key);
+        final WritePolicy policy = new WritePolicy(writePolicyUpdate);
+        policy.expiration = expiration;
+        policy.filterExp = filter;
+        policy.failOnFilteredOut = true;
+        try {
+            return getAerospikeClient().operate(policy, recordKey, operations);
+        } catch (AerospikeException e) {
+            if (e.getResultCode() == ResultCode.FILTERED_OUT) {
+                log.trace("record key {} filtered out on operate", key);
+                return null;
+            }
+            throw e;
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -224,6 +460,66 @@ public class AerospikeTemplate extends AerospikeAccessor implements AerospikeOpe
         }, new String[] {});
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteAll(final Expression filter) {
+        Assert.notNull(filter, "filter can't be null");
+        final ScanPolicy policy = new ScanPolicy();
+        policy.filterExp = filter;
+        getAerospikeClient().scanAll(policy, namespace, setname, new ScanCallback() {
+            public void scanCallback(Key key, Record record) throws AerospikeException {
+                getAerospikeClient().delete(writePolicyCommitMaster, key);
+            }
+        }, new String[] {});
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteWhere(final Expression filter) {
+        deleteWhere(filter, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteWhere(final Expression filter, final boolean waitTillComplete) {
+        Assert.notNull(filter, "filter can't be null");
+        final Statement stmt = new Statement();
+        stmt.setNamespace(namespace);
+        stmt.setSetName(setname);
+
+        final WritePolicy policy = new WritePolicy(writePolicyCommitMaster);
+        policy.filterExp = filter;
+
+        final ExecuteTask task = getAerospikeClient().execute(policy, stmt, Operation.delete());
+        log.trace("background delete {} started on set {}", task.getTaskId(), setname);
+        if (waitTillComplete) {
+            task.waitTillComplete();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void operateAll(final Expression filter, final Operation... operations) {
+        Assert.notEmpty(operations, "operations can't be empty");
+        final Statement stmt = new Statement();
+        stmt.setNamespace(namespace);
+        stmt.setSetName(setname);
+
+        final WritePolicy policy = new WritePolicy(writePolicyCommitMaster);
+        policy.filterExp = filter;
+
+        final ExecuteTask task = getAerospikeClient().execute(policy, stmt, operations);
+        log.trace("background operation {} started on set {}", task.getTaskId(), setname);
+    }
+
     @Override
     public void touch(final String key) {
         Assert.notNull(key, "key can't be null");
@@ -231,6 +527,62 @@ public class AerospikeTemplate extends AerospikeAccessor implements AerospikeOpe
         getAerospikeClient().touch(writePolicyCommitMaster, recordKey);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void touch(final String key, final int expiration) {
+        Assert.notNull(key, "key can't be null");
+        final Key recordKey = new Key(namespace, setname, key);
+        final WritePolicy policy = new WritePolicy(writePolicyCommitMaster);
+        policy.expiration = expiration;
+        getAerospikeClient().touch(policy, recordKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean touch(final String key, final Expression filter) {
+        return touch(key, filter, expiration);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean touch(final String key, final Expression filter, final int expiration) {
+        Assert.notNull(key, "key can't be null");
+        Assert.notNull(filter, "filter can't be null");
+        final Key recordKey = new Key(namespace, setname, key);
+        final WritePolicy policy = new WritePolicy(writePolicyCommitMaster);
+        policy.expiration = expiration;
+        policy.filterExp = filter;
+        policy.failOnFilteredOut = true;
+        try {
+            getAerospikeClient().touch(policy, recordKey);
+            return true;
+        } catch (AerospikeException e) {
+            if (e.getResultCode() == ResultCode.FILTERED_OUT || e.getResultCode() == ResultCode.KEY_NOT_FOUND_ERROR) {
+                log.trace("record key {} missing or filtered out on touch", key);
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns update policy with the record expiration, shared policy is reused for default expiration.
+     */
+    private WritePolicy writePolicyUpdate(final int expiration) {
+        if (expiration == writePolicyUpdate.expiration) {
+            return writePolicyUpdate;
+        }
+        final WritePolicy policy = new WritePolicy(writePolicyUpdate);
+        policy.expiration = expiration;
+        return policy;
+    }
+
     public void setNamespace(final String namespace) {
         this.namespace = namespace;
     }
@@ -0,0 +1,400 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.serialization;
+
+import java.io.Externalizable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import us.swcraft.springframework.store.serialization.CodecSerializer.ValueInput;
+import us.swcraft.springframework.store.serialization.CodecSerializer.ValueOutput;
+
+/**
+ * Codec of a single class built from method handles. Fields are written positionally in a fixed order, preceded by
+ * the schema fingerprint of field names and types.
+ * 
+ * @author Vlad Aleksandrov
+ */
+final class ClassCodec {
+
+    /**
+     * Marker of classes left to the delegate serializer.
+     */
+    static final ClassCodec UNSUPPORTED = new ClassCodec(null, 0, null, new FieldCodec[0]);
+
+    private static final String[] PLATFORM_PACKAGES = { "java.", "javax.", "sun.", "com.sun.", "jdk." };
+
+    private final Class<?> type;
+    private final int fingerprint;
+    private final MethodHandle constructor;
+    private final FieldCodec[] fields;
+
+    private ClassCodec(final Class<?> type, final int fingerprint, final MethodHandle constructor,
+            final FieldCodec[] fields) {
+        this.type = type;
+        this.fingerprint = fingerprint;
+        this.constructor = constructor;
+        this.fields = fields;
+    }
+
+    /**
+     * Builds codec of the class.
+     * 
+     * @param type
+     *            value class
+     * @return class codec or {@link #UNSUPPORTED} if the class should be serialized by the delegate
+     */
+    static ClassCodec forClass(final Class<?> type) {
+        if (!isCandidate(type)) {
+            return UNSUPPORTED;
+        }
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            final Constructor<?> noArgs = type.getDeclaredConstructor();
+            noArgs.setAccessible(true);
+            final MethodHandle constructor = lookup.unreflectConstructor(noArgs)
+                    .asType(MethodType.methodType(Object.class));
+
+            final List<Field> declared = new ArrayList<>();
+            for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+                final Field[] fields = c.getDeclaredFields();
+                Arrays.sort(fields, Comparator.comparing(Field::getName));
+                // super class fields first
+                declared.addAll(0, Arrays.asList(fields));
+            }
+            final List<FieldCodec> fields = new ArrayList<>();
+            int fingerprint = 17;
+            for (Field field : declared) {
+                final int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                    continue;
+                }
+                field.setAccessible(true);
+                fields.add(FieldCodec.forField(lookup, field));
+                fingerprint = 31 * fingerprint + field.getName().hashCode();
+                fingerprint = 31 * fingerprint + field.getType().getName().hashCode();
+            }
+            return new ClassCodec(type, fingerprint, constructor, fields.toArray(new FieldCodec[fields.size()]));
+        } catch (NoSuchMethodException | IllegalAccessException | RuntimeException e) {
+            // e.g. inaccessible module or missing default constructor
+            return UNSUPPORTED;
+        }
+    }
+
+    /**
+     * Plain application classes with default constructor and without custom serialization.
+     */
+    private static boolean isCandidate(final Class<?> type) {
+        if (type.isArray() || type.isPrimitive() || type.isInterface() || type.isEnum() || type.isAnonymousClass()
+                || type.isSynthetic() || Modifier.isAbstract(type.getModifiers())
+                || Externalizable.class.isAssignableFrom(type)) {
+            return false;
+        }
+        if (type.isMemberClass() && !Modifier.isStatic(type.getModifiers())) {
+            return false;
+        }
+        for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+            for (String platformPackage : PLATFORM_PACKAGES) {
+                if (c.getName().startsWith(platformPackage)) {
+                    return false;
+                }
+            }
+            if (declaresMethod(c, "writeObject") || declaresMethod(c, "readObject")
+                    || declaresMethod(c, "writeReplace") || declaresMethod(c, "readResolve")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean declaresMethod(final Class<?> type, final String name) {
+        for (java.lang.reflect.Method method : type.getDeclaredMethods()) {
+            if (method.getName().equals(name) && !Modifier.isStatic(method.getModifiers())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean isSupported() {
+        return this != UNSUPPORTED;
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    void write(final ValueOutput output, final Object value, final CodecSerializer<?> serializer, final int depth)
+            throws Throwable {
+        output.writeInt(fingerprint);
+        for (FieldCodec field : fields) {
+            field.write(output, value, serializer, depth);
+        }
+    }
+
+    Object read(final ValueInput input, final CodecSerializer<?> serializer, final int depth) throws Throwable {
+        if (input.readInt() != fingerprint) {
+            throw new SerializationException(type + " fields have changed since the value was serialized");
+        }
+        final Object value = (Object) constructor.invokeExact();
+        // fields may refer back to the value
+        input.addReference(value);
+        for (FieldCodec field : fields) {
+            field.read(input, value, serializer, depth);
+        }
+        return value;
+    }
+
+    /**
+     * Codec of a single field. Primitive fields are accessed through exactly typed handles without boxing.
+     */
+    abstract static class FieldCodec {
+
+        final MethodHandle getter;
+        final MethodHandle setter;
+
+        FieldCodec(final MethodHandle getter, final MethodHandle setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        abstract void write(ValueOutput output, Object target, CodecSerializer<?> serializer, int depth) throws Throwable;
+
+        abstract void read(ValueInput input, Object target, CodecSerializer<?> serializer, int depth) throws Throwable;
+
+        static FieldCodec forField(final MethodHandles.Lookup lookup, final Field field)
+                throws IllegalAccessException {
+            final Class<?> fieldType = field.getType();
+            final Class<?> handleType = fieldType.isPrimitive() ? fieldType : Object.class;
+            final MethodHandle getter = lookup.unreflectGetter(field)
+                    .asType(MethodType.methodType(handleType, Object.class));
+            final MethodHandle setter = lookup.unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, handleType));
+            if (fieldType == int.class) {
+                return new IntField(getter, setter);
+            } else if (fieldType == long.class) {
+                return new LongField(getter, setter);
+            } else if (fieldType == boolean.class) {
+                return new BooleanField(getter, setter);
+            } else if (fieldType == double.class) {
+                return new DoubleField(getter, setter);
+            } else if (fieldType == float.class) {
+                return new FloatField(getter, setter);
+            } else if (fieldType == short.class) {
+                return new ShortField(getter, setter);
+            } else if (fieldType == byte.class) {
+                return new ByteField(getter, setter);
+            } else if (fieldType == char.class) {
+                return new CharField(getter, setter);
+            } else if (fieldType == String.class) {
+                return new StringField(getter, setter);
+            }
+            return new ReferenceField(getter, setter);
+        }
+    }
+
+    static final class IntField extends FieldCodec {
+        IntField(final MethodHandle getter, final MethodHandle setter) {
+            super(getter, setter);
+        }
+
+        @Override
+        void write(final ValueOutput output, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            output.writeVarInt((int) getter.invokeExact(target), false);
+        }
+
+        @Override
+        void read(final ValueInput input, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            setter.invokeExact(target, input.readVarInt(false));
+        }
+    }
+
+    static final class LongField extends FieldCodec {
+        LongField(final MethodHandle getter, final MethodHandle setter) {
+            super(getter, setter);
+        }
+
+        @Override
+        void write(final ValueOutput output, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            output.writeVarLong((long) getter.invokeExact(target), false);
+        }
+
+        @Override
+        void read(final ValueInput input, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            setter.invokeExact(target, input.readVarLong(false));
+        }
+    }
+
+    static final class BooleanField extends FieldCodec {
+        BooleanField(final MethodHandle getter, final MethodHandle setter) {
+            super(getter, setter);
+        }
+
+        @Override
+        void write(final ValueOutput output, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            output.writeBoolean((boolean) getter.invokeExact(target));
+        }
+
+        @Override
+        void read(final ValueInput input, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            setter.invokeExact(target, input.readBoolean());
+        }
+    }
+
+    static final class DoubleField extends FieldCodec {
+        DoubleField(final MethodHandle getter, final MethodHandle setter) {
+            super(getter, setter);
+        }
+
+        @Override
+        void write(final ValueOutput output, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            output.writeDouble((double) getter.invokeExact(target));
+        }
+
+        @Override
+        void read(final ValueInput input, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            setter.invokeExact(target, input.readDouble());
+        }
+    }
+
+    static final class FloatField extends FieldCodec {
+        FloatField(final MethodHandle getter, final MethodHandle setter) {
+            super(getter, setter);
+        }
+
+        @Override
+        void write(final ValueOutput output, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            output.writeFloat((float) getter.invokeExact(target));
+        }
+
+        @Override
+        void read(final ValueInput input, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            setter.invokeExact(target, input.readFloat());
+        }
+    }
+
+    static final class ShortField extends FieldCodec {
+        ShortField(final MethodHandle getter, final MethodHandle setter) {
+            super(getter, setter);
+        }
+
+        @Override
+        void write(final ValueOutput output, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            output.writeShort((short) getter.invokeExact(target));
+        }
+
+        @Override
+        void read(final ValueInput input, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            setter.invokeExact(target, input.readShort());
+        }
+    }
+
+    static final class ByteField extends FieldCodec {
+        ByteField(final MethodHandle getter, final MethodHandle setter) {
+            super(getter, setter);
+        }
+
+        @Override
+        void write(final ValueOutput output, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            output.writeByte((byte) getter.invokeExact(target));
+        }
+
+        @Override
+        void read(final ValueInput input, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            setter.invokeExact(target, input.readByte());
+        }
+    }
+
+    static final class CharField extends FieldCodec {
+        CharField(final MethodHandle getter, final MethodHandle setter) {
+            super(getter, setter);
+        }
+
+        @Override
+        void write(final ValueOutput output, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            output.writeChar((char) getter.invokeExact(target));
+        }
+
+        @Override
+        void read(final ValueInput input, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            setter.invokeExact(target, input.readChar());
+        }
+    }
+
+    static final class StringField extends FieldCodec {
+        StringField(final MethodHandle getter, final MethodHandle setter) {
+            super(getter, setter);
+        }
+
+        @Override
+        void write(final ValueOutput output, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            output.writeString((String) (Object) getter.invokeExact(target));
+        }
+
+        @Override
+        void read(final ValueInput input, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            setter.invokeExact(target, (Object) input.readString());
+        }
+    }
+
+    /**
+     * Field of any other type, written with its runtime class.
+     */
+    static final class ReferenceField extends FieldCodec {
+        ReferenceField(final MethodHandle getter, final MethodHandle setter) {
+            super(getter, setter);
+        }
+
+        @Override
+        void write(final ValueOutput output, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            serializer.writeValue(output, (Object) getter.invokeExact(target), depth + 1);
+        }
+
+        @Override
+        void read(final ValueInput input, final Object target, final CodecSerializer<?> serializer, final int depth)
+                throws Throwable {
+            setter.invokeExact(target, serializer.readValue(input, depth + 1));
+        }
+    }
+
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.serialization;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import us.swcraft.springframework.store.StoreCompression;
+import us.swcraft.springframework.store.compression.Compressor;
+import us.swcraft.springframework.store.compression.Compressors;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Serializer of plain application classes with per-class codecs built from method handles on first use. Fields are
+ * written positionally after a schema fingerprint, so a value is not readable after its class fields change. Objects
+ * referenced more than once are written once and then referred to by id, preserving shared and cyclic references.
+ * Values of platform classes, classes without default constructor or with custom serialization methods are written by the
+ * delegate serializer.
+ *
+ * @param <T>
+ */
+public class CodecSerializer<T> implements Serializer<T> {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private static final byte NULL = 0;
+    private static final byte OBJECT = 1;
+    private static final byte DELEGATE = 2;
+    private static final byte STRING = 3;
+    private static final byte INTEGER = 4;
+    private static final byte LONG = 5;
+    private static final byte BOOLEAN = 6;
+    private static final byte DOUBLE = 7;
+    private static final byte REFERENCE = 8;
+
+    /**
+     * Max depth of nested codec values, deeper object graphs, e.g. long linked lists, are written by the delegate.
+     */
+    private static final int MAX_DEPTH = 64;
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+    private static final int MAX_RETAINED_REFERENCES = 4096;
+    private static final byte[] EMPTY_BUFFER = new byte[0];
+
+    /**
+     * Compression type. Default is {@link StoreCompression#NONE}.
+     */
+    private StoreCompression compressionType = StoreCompression.NONE;
+
+    private Compressor compressor;
+
+    private final Serializer<Object> delegate;
+
+    private final ClassValue<ClassCodec> codecs = new ClassValue<ClassCodec>() {
+        @Override
+        protected ClassCodec computeValue(final Class<?> type) {
+            final ClassCodec codec = ClassCodec.forClass(type);
+            log.debug("{} codec for {}", codec.isSupported() ? "Built" : "No", type);
+            return codec;
+        }
+    };
+
+    private final List<Class<?>> registeredClasses = new CopyOnWriteArrayList<>();
+    private final Map<Class<?>, Integer> registeredIds = new ConcurrentHashMap<>();
+    private final Map<String, Class<?>> classesByName = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<ValueOutput> outputs = ThreadLocal.withInitial(ValueOutput::new);
+    private final ThreadLocal<ValueInput> inputs = ThreadLocal.withInitial(ValueInput::new);
+
+    public CodecSerializer() {
+        this(StoreCompression.NONE);
+    }
+
+    public CodecSerializer(final StoreCompression compressionType) {
+        this(compressionType, new KryoReflectionSupportSerializer<>(StoreCompression.NONE));
+    }
+
+    /**
+     * @param compressionType
+     *            compression type
+     * @param delegate
+     *            serializer of values without codec, should not compress
+     */
+    public CodecSerializer(final StoreCompression compressionType, final Serializer<Object> delegate) {
+        this.compressionType = compressionType;
+        this.compressor = Compressors.forType(compressionType);
+        this.delegate = delegate;
+    }
+
+    /**
+     * Pre-registers classes, so their names are not written with each value. All nodes sharing the cache should
+     * register the same classes in the same order.
+     */
+    @Override
+    public void registerClasses(final Class<?>... classes) {
+        for (Class<?> registeredClass : classes) {
+            registeredIds.put(registeredClass, registeredClasses.size());
+            registeredClasses.add(registeredClass);
+        }
+        delegate.registerClasses(classes);
+    }
+
+    @Override
+    public byte[] serialize(final T data) throws SerializationException {
+        final ValueOutput output = outputs.get();
+        try {
+            output.clear();
+            try {
+                writeValue(output, data, 0);
+            } catch (GraphTooDeepException e) {
+                output.clear();
+                output.resetReferences();
+                writeDelegate(output, data);
+            }
+            return compress(data.getClass(), output.getBuffer(), output.position());
+        } catch (Error e) {
+            // e.g. out of memory, not a problem of the value
+            throw e;
+        } catch (Throwable e) {
+            log.error("Serialization error: {}", e.getMessage());
+            log.trace("", e);
+            throw new SerializationException(data.getClass() + " serialization problem", e);
+        } finally {
+            output.resetReferences();
+            if (output.getBuffer().length > MAX_RETAINED_BUFFER_SIZE) {
+                output.setBuffer(new byte[INITIAL_BUFFER_SIZE], -1);
+            }
+        }
+    }
+
+    @Override
+    public T deserialize(final byte[] serializedData, final Class<T> type) throws SerializationException {
+        return deserialize(serializedData, 0, serializedData.length, type);
+    }
+
+    @Override
+    public T deserialize(final byte[] serializedData, final int offset, final int length, final Class<T> type)
+            throws SerializationException {
+        final ValueInput input = inputs.get();
+        try {
+            if (compressionType == StoreCompression.NONE) {
+                input.setBuffer(serializedData, offset, length);
+            } else {
+                final byte[] uncompressed = compressor.decompress(serializedData, offset, length);
+                input.setBuffer(uncompressed, 0, uncompressed.length);
+            }
+            return type.cast(readValue(input, 0));
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            log.error("Deserialization error: {}", e.getMessage());
+            log.trace("", e);
+            throw new SerializationException(type + " deserialization problem", e);
+        } finally {
+            // do not hold the payload
+            input.setBuffer(EMPTY_BUFFER);
+            input.resetReferences();
+        }
+    }
+
+    void writeValue(final ValueOutput output, final Object value, final int depth) throws Throwable {
+        if (value == null) {
+            output.writeByte(NULL);
+            return;
+        }
+        final Class<?> type = value.getClass();
+        if (type == String.class) {
+            output.writeByte(STRING);
+            output.writeString((String) value);
+        } else if (type == Integer.class) {
+            output.writeByte(INTEGER);
+            output.writeVarInt((Integer) value, false);
+        } else if (type == Long.class) {
+            output.writeByte(LONG);
+            output.writeVarLong((Long) value, false);
+        } else if (type == Boolean.class) {
+            output.writeByte(BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else if (type == Double.class) {
+            output.writeByte(DOUBLE);
+            output.writeDouble((Double) value);
+        } else if (!output.writeReference(value)) {
+            final ClassCodec codec = codecs.get(type);
+            if (!codec.isSupported()) {
+                writeDelegate(output, value);
+            } else if (depth > MAX_DEPTH) {
+                throw GraphTooDeepException.INSTANCE;
+            } else {
+                output.writeByte(OBJECT);
+                writeClass(output, type);
+                codec.write(output, value, this, depth);
+            }
+        }
+    }
+
+    Object readValue(final ValueInput input, final int depth) throws Throwable {
+        final byte tag = input.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return input.readString();
+            case INTEGER:
+                return input.readVarInt(false);
+            case LONG:
+                return input.readVarLong(false);
+            case BOOLEAN:
+                return input.readBoolean();
+            case DOUBLE:
+                return input.readDouble();
+            case OBJECT:
+                final ClassCodec codec = codecs.get(readClass(input));
+                if (!codec.isSupported()) {
+                    throw new SerializationException("No codec for " + codec.getType());
+                }
+                return codec.read(input, this, depth);
+            case DELEGATE:
+                final int id = input.reserveReference();
+                final Class<?> type = readClass(input);
+                final byte[] bytes = input.readBytes(input.readVarInt(true));
+                final Object value = delegate.deserialize(bytes, uncheckedType(type));
+                input.setReference(id, value);
+                return value;
+            case REFERENCE:
+                return input.getReference(input.readVarInt(true));
+            default:
+                throw new SerializationException("Unknown value tag " + tag);
+        }
+    }
+
+    private void writeDelegate(final ValueOutput output, final Object value) {
+        output.writeByte(DELEGATE);
+        writeClass(output, value.getClass());
+        final byte[] bytes = delegate.serialize(value);
+        output.writeVarInt(bytes.length, true);
+        output.writeBytes(bytes);
+    }
+
+    private void writeClass(final ValueOutput output, final Class<?> type) {
+        final Integer id = registeredIds.get(type);
+        if (id != null) {
+            output.writeVarInt(id + 1, true);
+        } else {
+            output.writeVarInt(0, true);
+            output.writeString(type.getName());
+        }
+    }
+
+    private Class<?> readClass(final ValueInput input) throws ClassNotFoundException {
+        final int id = input.readVarInt(true);
+        if (id > 0) {
+            return registeredClasses.get(id - 1);
+        }
+        final String className = input.readString();
+        Class<?> type = classesByName.get(className);
+        if (type == null) {
+            type = Class.forName(className);
+            classesByName.put(className, type);
+        }
+        return type;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<Object> uncheckedType(final Class<?> type) {
+        return (Class<Object>) type;
+    }
+
+    /**
+     * Returns the payload of serialized bytes, compressed if configured.
+     */
+    private byte[] compress(final Class<?> type, final byte[] buffer, final int length) throws IOException {
+        if (compressionType == StoreCompression.NONE) {
+            return Arrays.copyOf(buffer, length);
+        }
+        return compressor.compress(type, buffer, 0, length);
+    }
+
+    /**
+     * Replaces compressor of the configured compression type, e.g. with
+     * {@link us.swcraft.springframework.store.compression.AdaptiveCompressor}. Not used with
+     * {@link StoreCompression#NONE}.
+     */
+    @Override
+    public void setCompressor(final Compressor compressor) {
+        this.compressor = compressor;
+    }
+
+    @Override
+    public Compressor getCompressor() {
+        return compressor;
+    }
+
+    /**
+     * Output of a single value, tracking objects already written.
+     */
+    static final class ValueOutput extends Output {
+
+        private IdentityHashMap<Object, Integer> written = new IdentityHashMap<>();
+
+        ValueOutput() {
+            super(INITIAL_BUFFER_SIZE, -1);
+        }
+
+        /**
+         * Writes reference to the object if it has been written before, otherwise assigns it the next id.
+         * 
+         * @return <code>true</code> if reference has been written
+         */
+        boolean writeReference(final Object value) {
+            final Integer id = written.putIfAbsent(value, written.size());
+            if (id == null) {
+                return false;
+            }
+            writeByte(REFERENCE);
+            writeVarInt(id, true);
+            return true;
+        }
+
+        void resetReferences() {
+            if (written.size() > MAX_RETAINED_REFERENCES) {
+                written = new IdentityHashMap<>();
+            } else {
+                written.clear();
+            }
+        }
+    }
+
+    /**
+     * Input of a single value, tracking objects already read in the order they were written.
+     */
+    static final class ValueInput extends Input {
+
+        private ArrayList<Object> read = new ArrayList<>();
+
+        ValueInput() {
+            super(4096);
+        }
+
+        /**
+         * Assigns the next id to an object read, before its fields are read.
+         */
+        void addReference(final Object value) {
+            read.add(value);
+        }
+
+        int reserveReference() {
+            read.add(null);
+            return read.size() - 1;
+        }
+
+        void setReference(final int id, final Object value) {
+            read.set(id, value);
+        }
+
+        Object getReference(final int id) throws SerializationException {
+            if (id >= read.size()) {
+                throw new SerializationException("Unknown reference " + id);
+            }
+            return read.get(id);
+        }
+
+        void resetReferences() {
+            if (read.size() > MAX_RETAINED_REFERENCES) {
+                read = new ArrayList<>();
+            } else {
+                read.clear();
+            }
+        }
+    }
+
+    /**
+     * Thrown when nested values exceed max depth, e.g. on long chains of references.
+     */
+    private static final class GraphTooDeepException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        static final GraphTooDeepException INSTANCE = new GraphTooDeepException();
+
+        private GraphTooDeepException() {
+            super("object graph too deep", null, false, false);
+        }
+    }
+
+}
@@ -15,16 +15,6 @@
  */
 package us.swcraft.springframework.store.serialization;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-
-import org.iq80.snappy.SnappyFramedInputStream;
-import org.iq80.snappy.SnappyFramedOutputStream;
 import org.nustaq.serialization.FSTConfiguration;
 import org.nustaq.serialization.FSTObjectInput;
 import org.nustaq.serialization.FSTObjectOutput;
@@ -32,6 +22,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import us.swcraft.springframework.store.StoreCompression;
+import us.swcraft.springframework.store.compression.Compressor;
+import us.swcraft.springframework.store.compression.Compressors;
 
 /**
  * FST: fast java serialization drop in-replacement,
@@ -47,6 +39,8 @@ public class FSTSerializer<T> implements Serializer<T> {
      */
     private StoreCompression compressionType = StoreCompression.NONE;
 
+    private Compressor compressor = Compressors.forType(StoreCompression.NONE);
+
     private FSTConfiguration conf = FSTConfiguration.createDefaultConfiguration();
 
     public FSTSerializer() {
@@ -55,19 +49,25 @@ public class FSTSerializer<T> implements Serializer<T> {
 
     public FSTSerializer(final StoreCompression compressionType) {
         this.compressionType = compressionType;
+        this.compressor = Compressors.forType(compressionType);
+    }
+
+    protected FSTSerializer(final StoreCompression compressionType, final FSTConfiguration conf) {
+        this.compressionType = compressionType;
+        this.compressor = Compressors.forType(compressionType);
+        this.conf = conf;
     }
 
     @Override
     public byte[] serialize(final T data) throws SerializationException {
-        try (
-                final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(8192);
-                final OutputStream compressionOutputStream = wrapOutputStream(outputStream);
-                final FSTObjectOutput output = new FSTObjectOutput(compressionOutputStream, conf);) {
+        try {
+            // thread-local output reused by configuration
+            final FSTObjectOutput output = conf.getObjectOutput();
             output.writeObject(data);
-            output.flush();
-            compressionOutputStream.flush();
-            outputStream.flush();
-            return outputStream.toByteArray();
+            if (compressionType == StoreCompression.NONE) {
+                return output.getCopyOfWrittenBuffer();
+            }
+            return compressor.compress(data.getClass(), output.getBuffer(), 0, output.getWritten());
         } catch (Exception e) {
             log.error("Serialization error: {}", e.getMessage());
             log.trace("", e);
@@ -78,11 +78,23 @@ public class FSTSerializer<T> implements Serializer<T> {
 
     @Override
     public T deserialize(final byte[] serializedData, final Class<T> type) throws SerializationException {
-        try (
-                final ByteArrayInputStream inputStream = new ByteArrayInputStream(serializedData);
-                final InputStream decompressionInputStream = wrapInputStream(inputStream);
-                final FSTObjectInput input = new FSTObjectInput(decompressionInputStream, conf);) {
+        return deserialize(serializedData, 0, serializedData.length, type);
+    }
 
+    @Override
+    public T deserialize(final byte[] serializedData, final int offset, final int length, final Class<T> type)
+            throws SerializationException {
+        try {
+            // thread-local input reused by configuration
+            final FSTObjectInput input;
+            if (compressionType != StoreCompression.NONE) {
+                final byte[] uncompressed = compressor.decompress(serializedData, offset, length);
+                input = conf.getObjectInput(uncompressed, uncompressed.length);
+            } else if (offset == 0) {
+                input = conf.getObjectInput(serializedData, length);
+            } else {
+                input = conf.getObjectInputCopyFrom(serializedData, offset, length);
+            }
             @SuppressWarnings("unchecked")
             final T result = (T) input.readObject();
             return result;
@@ -94,22 +106,29 @@ public class FSTSerializer<T> implements Serializer<T> {
 
     }
 
-    private OutputStream wrapOutputStream(final OutputStream os) throws IOException {
-        switch (compressionType) {
-            case SNAPPY:
-                return new SnappyFramedOutputStream(os);
-            default:
-                return new BufferedOutputStream(os);
-        }
+    /**
+     * Pre-registers classes, so their names are not written with each value. All nodes sharing the cache should
+     * register the same classes in the same order.
+     */
+    @Override
+    public void registerClasses(final Class<?>... classes) {
+        conf.registerClass(classes);
     }
 
-    private InputStream wrapInputStream(final InputStream is) throws IOException {
-        switch (compressionType) {
-            case SNAPPY:
-                return new SnappyFramedInputStream(is, false);
-            default:
-                return new BufferedInputStream(is);
-        }
+    /**
+     * Replaces compressor of the configured compression type, e.g. with
+     * {@link us.swcraft.springframework.store.compression.AdaptiveCompressor}. Not used with
+     * {@link StoreCompression#NONE}.
+     */
+    @Override
+    public void setCompressor(final Compressor compressor) {
+        this.compressor = compressor;
     }
 
+    @Override
+    public Compressor getCompressor() {
+        return compressor;
+    }
+
+
 }
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.serialization;
+
+import org.nustaq.serialization.FSTConfiguration;
+
+import us.swcraft.springframework.store.StoreCompression;
+
+/**
+ * FST serializer using unsafe binary configuration. It is faster than {@link FSTSerializer}, but its format depends on
+ * platform byte order and is not compatible with the default one, so all nodes sharing the cache should use it.
+ *
+ * @param <T>
+ */
+public class FSTUnsafeSerializer<T> extends FSTSerializer<T> {
+
+    public FSTUnsafeSerializer() {
+        this(StoreCompression.NONE);
+    }
+
+    public FSTUnsafeSerializer(final StoreCompression compressionType) {
+        super(compressionType, FSTConfiguration.createUnsafeBinaryConfiguration());
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.serialization;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.util.Assert;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.pool.KryoFactory;
+
+/**
+ * Bounded pool of strongly referenced Kryo instances. Each thread borrows from and returns to its home slot first, so
+ * a thread usually gets back its own warm instance without contention. Instances returned to a full pool are dropped.
+ * 
+ * @author Vlad Aleksandrov
+ */
+public class KryoInstancePool {
+
+    private static final int PROBES = 4;
+
+    private final KryoFactory factory;
+    private final AtomicReferenceArray<Kryo> slots;
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param factory
+     *            Kryo instance factory
+     * @param capacity
+     *            max number of pooled instances, rounded up to power of two
+     */
+    public KryoInstancePool(final KryoFactory factory, final int capacity) {
+        Assert.notNull(factory, "factory can't be null");
+        Assert.isTrue(capacity > 0, "capacity should be positive");
+        this.factory = factory;
+        final int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Takes pooled instance or creates new one if none is available.
+     * 
+     * @return Kryo instance
+     */
+    public Kryo borrow() {
+        final int home = homeSlot();
+        for (int i = 0; i < PROBES; i++) {
+            final Kryo kryo = slots.getAndSet((home + i) & mask, null);
+            if (kryo != null) {
+                hits.increment();
+                return kryo;
+            }
+        }
+        misses.increment();
+        return factory.create();
+    }
+
+    /**
+     * Returns borrowed instance to the pool.
+     * 
+     * @param kryo
+     *            Kryo instance
+     */
+    public void release(final Kryo kryo) {
+        final int home = homeSlot();
+        for (int i = 0; i < PROBES; i++) {
+            if (slots.compareAndSet((home + i) & mask, null, kryo)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return max number of pooled instances
+     */
+    public int getCapacity() {
+        return slots.length();
+    }
+
+    /**
+     * @return number of currently pooled instances
+     */
+    public int getSize() {
+        int size = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            if (slots.get(i) != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return number of borrows served by pooled instance
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return number of borrows served by new instance
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return share of borrows served by pooled instance
+     */
+    public double getHitRate() {
+        final long hitCount = getHits();
+        final long total = hitCount + getMisses();
+        return total == 0 ? 1.0 : (double) hitCount / total;
+    }
+
+    private int homeSlot() {
+        final long id = Thread.currentThread().getId();
+        return (((int) (id ^ (id >>> 32)) * 0x9e3779b9) >>> 16) & mask;
+    }
+
+}
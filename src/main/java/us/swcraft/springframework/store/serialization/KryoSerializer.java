@@ -19,14 +19,16 @@ import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.kryo.pool.KryoFactory;
-import com.esotericsoftware.kryo.pool.KryoPool;
-import org.iq80.snappy.SnappyFramedInputStream;
-import org.iq80.snappy.SnappyFramedOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import us.swcraft.springframework.store.StoreCompression;
+import us.swcraft.springframework.store.compression.Compressor;
+import us.swcraft.springframework.store.compression.Compressors;
 
-import java.io.*;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 
 /**
@@ -43,7 +45,22 @@ public class KryoSerializer<T> implements Serializer<T> {
      */
     private StoreCompression compressionType = StoreCompression.NONE;
 
-    private KryoPool pool;
+    private Compressor compressor = Compressors.forType(StoreCompression.NONE);
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+    private static final byte[] EMPTY_BUFFER = new byte[0];
+
+    private KryoInstancePool pool;
+
+    /**
+     * Per-thread reusable buffers, sized from serialized size history.
+     */
+    private final ThreadLocal<Output> outputs = ThreadLocal.withInitial(() -> createOutput(INITIAL_BUFFER_SIZE));
+    private final ThreadLocal<Input> inputs = ThreadLocal.withInitial(() -> createInput(4096));
+    private final SerializedSizeHistory sizes = new SerializedSizeHistory();
+
+    private final List<Class<?>> registeredClasses = new CopyOnWriteArrayList<>();
 
     public KryoSerializer() {
         init();
@@ -51,6 +68,7 @@ public class KryoSerializer<T> implements Serializer<T> {
 
     public KryoSerializer(final StoreCompression compressionType) {
         this.compressionType = compressionType;
+        this.compressor = Compressors.forType(compressionType);
         init();
     }
 
@@ -59,10 +77,42 @@ public class KryoSerializer<T> implements Serializer<T> {
             public Kryo create() {
                 Kryo kryo = getKryoInstance();
                 customConfiguration(kryo);
+                for (Class<?> registeredClass : registeredClasses) {
+                    kryo.register(registeredClass);
+                }
                 return kryo;
             }
         };
-        pool = new KryoPool.Builder(factory).softReferences().build();
+        pool = new KryoInstancePool(factory, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates growable output buffer.
+     * 
+     * @param bufferSize
+     *            initial buffer size
+     */
+    protected Output createOutput(final int bufferSize) {
+        return new Output(bufferSize, -1);
+    }
+
+    /**
+     * Creates input buffer.
+     * 
+     * @param bufferSize
+     *            buffer size used for compressed input
+     */
+    protected Input createInput(final int bufferSize) {
+        return new Input(bufferSize);
+    }
+
+    /**
+     * Returns Kryo instance pool exposing its size and hit rate.
+     * 
+     * @return Kryo instance pool
+     */
+    public KryoInstancePool getPool() {
+        return pool;
     }
 
     /**
@@ -74,6 +124,15 @@ public class KryoSerializer<T> implements Serializer<T> {
         // NO-OP
     }
 
+    /**
+     * Pre-registers classes, so their names are not written with each value. All nodes sharing the cache should
+     * register the same classes in the same order.
+     */
+    @Override
+    public void registerClasses(final Class<?>... classes) {
+        registeredClasses.addAll(Arrays.asList(classes));
+    }
+
     public Kryo getKryoInstance() {
         return new Kryo();
     }
@@ -81,21 +140,26 @@ public class KryoSerializer<T> implements Serializer<T> {
     @Override
     public byte[] serialize(final T data) throws SerializationException {
         final Kryo kryo = pool.borrow();
-        try (
-                final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(8192);
-                final OutputStream compressionOutputStream = wrapOutputStream(outputStream);
-                final Output output = new Output(compressionOutputStream);) {
-
+        final Output output = outputs.get();
+        try {
+            final int expectedSize = sizes.expectedSize(data.getClass());
+            if (output.getBuffer().length < expectedSize) {
+                output.setBuffer(new byte[expectedSize], -1);
+            } else {
+                output.clear();
+            }
             kryo.writeObject(output, data);
-            output.flush();
-            compressionOutputStream.flush();
-            outputStream.flush();
-            return outputStream.toByteArray();
+            final int size = output.position();
+            sizes.record(data.getClass(), size);
+            return compress(data.getClass(), output.getBuffer(), size);
         } catch (Exception e) {
             log.error("Serialization error: {}", e.getMessage());
             log.trace("", e);
             throw new SerializationException(data.getClass() + " serialization problem", e);
         } finally {
+            if (output.getBuffer().length > MAX_RETAINED_BUFFER_SIZE) {
+                output.setBuffer(new byte[INITIAL_BUFFER_SIZE], -1);
+            }
             pool.release(kryo);
         }
 
@@ -103,12 +167,21 @@ public class KryoSerializer<T> implements Serializer<T> {
 
     @Override
     public T deserialize(final byte[] serializedData, final Class<T> type) throws SerializationException {
-        final Kryo kryo = pool.borrow();
-        try (
-                final ByteArrayInputStream inputStream = new ByteArrayInputStream(serializedData);
-                final InputStream decompressionInputStream = wrapInputStream(inputStream);
-                final Input input = new Input(decompressionInputStream);) {
+        return deserialize(serializedData, 0, serializedData.length, type);
+    }
 
+    @Override
+    public T deserialize(final byte[] serializedData, final int offset, final int length, final Class<T> type)
+            throws SerializationException {
+        final Kryo kryo = pool.borrow();
+        final Input input = inputs.get();
+        try {
+            if (compressionType == StoreCompression.NONE) {
+                input.setBuffer(serializedData, offset, length);
+            } else {
+                final byte[] uncompressed = compressor.decompress(serializedData, offset, length);
+                input.setBuffer(uncompressed, 0, uncompressed.length);
+            }
             final T result = kryo.readObject(input, type);
             return result;
         } catch (Exception e) {
@@ -116,27 +189,36 @@ public class KryoSerializer<T> implements Serializer<T> {
             log.trace("", e);
             throw new SerializationException(type + " deserialization problem", e);
         } finally {
+            // do not hold the payload
+            input.setBuffer(EMPTY_BUFFER);
             pool.release(kryo);
         }
 
     }
 
-    private OutputStream wrapOutputStream(final OutputStream os) throws IOException {
-        switch (compressionType) {
-            case SNAPPY:
-                return new SnappyFramedOutputStream(os);
-            default:
-                return new BufferedOutputStream(os);
+    /**
+     * Returns the payload of serialized bytes, compressed if configured.
+     */
+    private byte[] compress(final Class<?> type, final byte[] buffer, final int length) throws IOException {
+        if (compressionType == StoreCompression.NONE) {
+            return Arrays.copyOf(buffer, length);
         }
+        return compressor.compress(type, buffer, 0, length);
     }
 
-    private InputStream wrapInputStream(final InputStream is) throws IOException {
-        switch (compressionType) {
-            case SNAPPY:
-                return new SnappyFramedInputStream(is, false);
-            default:
-                return new BufferedInputStream(is);
-        }
+    /**
+     * Replaces compressor of the configured compression type, e.g. with
+     * {@link us.swcraft.springframework.store.compression.AdaptiveCompressor}. Not used with
+     * {@link StoreCompression#NONE}.
+     */
+    @Override
+    public void setCompressor(final Compressor compressor) {
+        this.compressor = compressor;
+    }
+
+    @Override
+    public Compressor getCompressor() {
+        return compressor;
     }
 
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.serialization;
+
+import us.swcraft.springframework.store.StoreCompression;
+
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.io.UnsafeInput;
+import com.esotericsoftware.kryo.io.UnsafeOutput;
+
+/**
+ * Kryo serializer using unsafe input and output buffers. It is faster than {@link KryoSerializer}, but its format
+ * depends on platform byte order and is not compatible with the default one, so all nodes sharing the cache should
+ * use it.
+ *
+ * @param <T>
+ */
+public class KryoUnsafeSerializer<T> extends KryoSerializer<T> {
+
+    public KryoUnsafeSerializer() {
+        super();
+    }
+
+    public KryoUnsafeSerializer(final StoreCompression compressionType) {
+        super(compressionType);
+    }
+
+    @Override
+    protected Output createOutput(final int bufferSize) {
+        return new UnsafeOutput(bufferSize, -1);
+    }
+
+    @Override
+    protected Input createInput(final int bufferSize) {
+        return new UnsafeInput(bufferSize);
+    }
+
+}
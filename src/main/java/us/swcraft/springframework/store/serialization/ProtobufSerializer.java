@@ -0,0 +1,257 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.serialization;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import us.swcraft.springframework.store.StoreCompression;
+import us.swcraft.springframework.store.compression.Compressor;
+import us.swcraft.springframework.store.compression.Compressors;
+
+/**
+ * Serializer storing protobuf messages in their wire format. Generated message classes are detected by reflection, so
+ * protobuf is not a dependency of the serializer. Other values are written by the delegate serializer.
+ *
+ * @param <T>
+ */
+public class ProtobufSerializer<T> implements Serializer<T> {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private static final String MESSAGE_LITE = "com.google.protobuf.MessageLite";
+    private static final String PARSER = "com.google.protobuf.Parser";
+
+    private static final byte DELEGATE = 0;
+    private static final byte MESSAGE = 1;
+
+    /**
+     * Compression type. Default is {@link StoreCompression#NONE}.
+     */
+    private StoreCompression compressionType = StoreCompression.NONE;
+
+    private Compressor compressor;
+
+    private final Serializer<Object> delegate;
+
+    private final ClassValue<MessageCodec> codecs = new ClassValue<MessageCodec>() {
+        @Override
+        protected MessageCodec computeValue(final Class<?> type) {
+            final MessageCodec codec = MessageCodec.forClass(type);
+            if (codec != MessageCodec.NONE) {
+                log.debug("Protobuf message {}", type);
+            }
+            return codec;
+        }
+    };
+
+    public ProtobufSerializer() {
+        this(StoreCompression.NONE);
+    }
+
+    public ProtobufSerializer(final StoreCompression compressionType) {
+        this(compressionType, new KryoReflectionSupportSerializer<>(StoreCompression.NONE));
+    }
+
+    /**
+     * @param compressionType
+     *            compression type
+     * @param delegate
+     *            serializer of values other than protobuf messages, should not compress
+     */
+    public ProtobufSerializer(final StoreCompression compressionType, final Serializer<Object> delegate) {
+        this.compressionType = compressionType;
+        this.compressor = Compressors.forType(compressionType);
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void registerClasses(final Class<?>... classes) {
+        delegate.registerClasses(classes);
+    }
+
+    @Override
+    public byte[] serialize(final T data) throws SerializationException {
+        try {
+            final MessageCodec codec = codecs.get(data.getClass());
+            final byte[] bytes;
+            final byte format;
+            if (codec != MessageCodec.NONE) {
+                bytes = (byte[]) codec.toByteArray.invokeExact((Object) data);
+                format = MESSAGE;
+            } else {
+                bytes = delegate.serialize(data);
+                format = DELEGATE;
+            }
+            return compress(data.getClass(), format, bytes);
+        } catch (Throwable e) {
+            log.error("Serialization error: {}", e.getMessage());
+            log.trace("", e);
+            throw new SerializationException(data.getClass() + " serialization problem", e);
+        }
+    }
+
+    @Override
+    public T deserialize(final byte[] serializedData, final Class<T> type) throws SerializationException {
+        return deserialize(serializedData, 0, serializedData.length, type);
+    }
+
+    @Override
+    public T deserialize(final byte[] serializedData, final int offset, final int length, final Class<T> type)
+            throws SerializationException {
+        try {
+            byte[] bytes = serializedData;
+            int start = offset;
+            int end = offset + length;
+            if (compressionType != StoreCompression.NONE) {
+                bytes = compressor.decompress(serializedData, offset, length);
+                start = 0;
+                end = bytes.length;
+            }
+            if (bytes[start] == MESSAGE) {
+                final MessageCodec codec = codecs.get(type);
+                if (codec == MessageCodec.NONE) {
+                    throw new SerializationException(type + " is not a protobuf message");
+                }
+                return type.cast(codec.parseFrom.invokeExact(bytes, start + 1, end - start - 1));
+            }
+            return type.cast(delegate.deserialize(bytes, start + 1, end - start - 1, uncheckedType(type)));
+        } catch (Throwable e) {
+            log.error("Deserialization error: {}", e.getMessage());
+            log.trace("", e);
+            throw new SerializationException(type + " deserialization problem", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<Object> uncheckedType(final Class<?> type) {
+        return (Class<Object>) type;
+    }
+
+    /**
+     * Returns the payload of format byte and serialized bytes, compressed if configured.
+     */
+    private byte[] compress(final Class<?> type, final byte format, final byte[] bytes) throws IOException {
+        final byte[] payload = new byte[bytes.length + 1];
+        payload[0] = format;
+        System.arraycopy(bytes, 0, payload, 1, bytes.length);
+        if (compressionType == StoreCompression.NONE) {
+            return payload;
+        }
+        return compressor.compress(type, payload, 0, payload.length);
+    }
+
+    /**
+     * Replaces compressor of the configured compression type, e.g. with
+     * {@link us.swcraft.springframework.store.compression.AdaptiveCompressor}. Not used with
+     * {@link StoreCompression#NONE}.
+     */
+    @Override
+    public void setCompressor(final Compressor compressor) {
+        this.compressor = compressor;
+    }
+
+    @Override
+    public Compressor getCompressor() {
+        return compressor;
+    }
+
+    /**
+     * Method handles of a generated message class.
+     */
+    private static final class MessageCodec {
+
+        static final MessageCodec NONE = new MessageCodec(null, null);
+
+        /**
+         * <code>(Object)byte[]</code>
+         */
+        final MethodHandle toByteArray;
+
+        /**
+         * <code>(byte[],int,int)Object</code>
+         */
+        final MethodHandle parseFrom;
+
+        private MessageCodec(final MethodHandle toByteArray, final MethodHandle parseFrom) {
+            this.toByteArray = toByteArray;
+            this.parseFrom = parseFrom;
+        }
+
+        static MessageCodec forClass(final Class<?> type) {
+            final Class<?> messageLite = findInterface(type, MESSAGE_LITE);
+            if (messageLite == null || type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+                return NONE;
+            }
+            try {
+                final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                final MethodHandle toByteArray = lookup.unreflect(messageLite.getMethod("toByteArray"))
+                        .asType(MethodType.methodType(byte[].class, Object.class));
+                final Class<?> parserType = Class.forName(PARSER, false, messageLite.getClassLoader());
+                final MethodHandle parseFrom = lookup
+                        .unreflect(parserType.getMethod("parseFrom", byte[].class, int.class, int.class))
+                        .bindTo(parser(type))
+                        .asType(MethodType.methodType(Object.class, byte[].class, int.class, int.class));
+                return new MessageCodec(toByteArray, parseFrom);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LoggerFactory.getLogger(ProtobufSerializer.class).warn("No parser of protobuf message {}: {}", type,
+                        e.getMessage());
+                return NONE;
+            }
+        }
+
+        /**
+         * Returns message parser, exposed by static <code>parser()</code> method since protobuf 3 and by static
+         * <code>PARSER</code> field before.
+         */
+        private static Object parser(final Class<?> type) throws ReflectiveOperationException {
+            try {
+                final Method parser = type.getMethod("parser");
+                if (Modifier.isStatic(parser.getModifiers())) {
+                    return parser.invoke(null);
+                }
+            } catch (NoSuchMethodException e) {
+                // protobuf 2
+            }
+            final Field parser = type.getField("PARSER");
+            return parser.get(null);
+        }
+
+        private static Class<?> findInterface(final Class<?> type, final String name) {
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Class<?> i : c.getInterfaces()) {
+                    if (i.getName().equals(name)) {
+                        return i;
+                    }
+                    final Class<?> found = findInterface(i, name);
+                    if (found != null) {
+                        return found;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+}
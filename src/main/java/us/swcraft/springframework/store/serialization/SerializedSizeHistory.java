@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.serialization;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Recent serialized sizes per class, used to size serialization buffers up front so they are not grown and copied
+ * while writing. Expected size follows growth immediately and decays slowly.
+ * 
+ * @author Vlad Aleksandrov
+ */
+class SerializedSizeHistory {
+
+    private static final int DEFAULT_SIZE = 1024;
+    private static final int MAX_CLASSES = 1024;
+
+    private final ConcurrentMap<Class<?>, Integer> sizes = new ConcurrentHashMap<>();
+
+    /**
+     * Returns expected serialized size of the class instances.
+     * 
+     * @param type
+     *            serialized class
+     * @return expected size in bytes
+     */
+    int expectedSize(final Class<?> type) {
+        final Integer size = sizes.get(type);
+        return size == null ? DEFAULT_SIZE : size;
+    }
+
+    /**
+     * Records serialized size of the class instance.
+     * 
+     * @param type
+     *            serialized class
+     * @param size
+     *            serialized size in bytes
+     */
+    void record(final Class<?> type, final int size) {
+        if (sizes.size() >= MAX_CLASSES && !sizes.containsKey(type)) {
+            return;
+        }
+        sizes.merge(type, size, (previous, current) -> Math.max(current, previous - previous / 8));
+    }
+
+}
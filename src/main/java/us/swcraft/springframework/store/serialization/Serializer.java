@@ -15,6 +15,11 @@
  */
 package us.swcraft.springframework.store.serialization;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import us.swcraft.springframework.store.compression.Compressor;
+
 /**
  * Basic interface serialization and deserialization of Objects to byte arrays (binary data). It is recommended that
  * implementations are designed to handle null objects/empty arrays on serialization and deserialization side.
@@ -42,4 +47,70 @@ public interface Serializer<T> {
      */
     T deserialize(byte[] bytes, Class<T> type) throws SerializationException;
 
-}
\ No newline at end of file
+    /**
+     * Deserialize an object from the given range of binary data without copying it.
+     * 
+     * @param bytes
+     *            array holding object binary representation
+     * @param offset
+     *            start of object binary representation
+     * @param length
+     *            length of object binary representation
+     * @return the equivalent object instance
+     */
+    default T deserialize(final byte[] bytes, final int offset, final int length, final Class<T> type)
+            throws SerializationException {
+        if (offset == 0 && length == bytes.length) {
+            return deserialize(bytes, type);
+        }
+        return deserialize(Arrays.copyOfRange(bytes, offset, offset + length), type);
+    }
+
+    /**
+     * Deserialize an object from the remaining bytes of the buffer. Buffer position is not changed.
+     * 
+     * @param buffer
+     *            buffer holding object binary representation
+     * @return the equivalent object instance
+     */
+    default T deserialize(final ByteBuffer buffer, final Class<T> type) throws SerializationException {
+        if (buffer.hasArray()) {
+            return deserialize(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), type);
+        }
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return deserialize(bytes, type);
+    }
+
+    /**
+     * Pre-registers classes of cached values to shrink their binary representation. Should be called before first
+     * use. Serializers without class registration ignore it.
+     * 
+     * @param classes
+     *            classes to register, in the same order on all nodes
+     */
+    default void registerClasses(final Class<?>... classes) {
+        // NO-OP
+    }
+
+    /**
+     * Replaces compressor of serialized values. Should be called before first use. Serializers without compression
+     * ignore it.
+     * 
+     * @param compressor
+     *            compressor of serialized values
+     */
+    default void setCompressor(final Compressor compressor) {
+        // NO-OP
+    }
+
+    /**
+     * Returns compressor of serialized values.
+     * 
+     * @return compressor or <code>null</code> if serializer does not compress
+     */
+    default Compressor getCompressor() {
+        return null;
+    }
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class FrequencySketchTest {
+
+    @Test
+    public void frequency_halvedOnceSampleSizeReached() {
+        FrequencySketch sketch = new FrequencySketch(16);
+        // sample size is 10 x sketch width
+        for (int i = 0; i < 10 * 16 - 1; i++) {
+            sketch.increment("key-1");
+        }
+        assertThat(sketch.frequency("key-1"), is(159));
+
+        sketch.increment("key-1");
+        assertThat(sketch.frequency("key-1"), is(80));
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import us.swcraft.springframework.store.StoreCompression;
+import us.swcraft.springframework.store.serialization.KryoSerializer;
+
+public class LazyValueWrapperTest {
+
+    @Test
+    public void get_deserializesOnFirstAccess() {
+        KryoSerializer<String> serializer = new KryoSerializer<>(StoreCompression.NONE);
+        LazyValueWrapper wrapper = new LazyValueWrapper(serializer.serialize("Vestibulum"), String.class, serializer);
+        assertThat(wrapper.isDeserialized(), is(false));
+
+        Object value = wrapper.get();
+        assertThat(value, is("Vestibulum"));
+        assertThat(wrapper.isDeserialized(), is(true));
+        assertThat(wrapper.get(), sameInstance(value));
+    }
+
+}
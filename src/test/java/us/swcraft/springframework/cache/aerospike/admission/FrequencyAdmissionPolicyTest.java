@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike.admission;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class FrequencyAdmissionPolicyTest {
+
+    @Test
+    public void admit_afterMinFrequencyReads() {
+        FrequencyAdmissionPolicy policy = new FrequencyAdmissionPolicy(2);
+        policy.recordAccess("key-1");
+        assertThat(policy.admit("key-1", 10), is(false));
+
+        policy.recordAccess("key-1");
+        assertThat(policy.admit("key-1", 10), is(true));
+        assertThat(policy.admit("key-2", 10), is(false));
+    }
+
+}
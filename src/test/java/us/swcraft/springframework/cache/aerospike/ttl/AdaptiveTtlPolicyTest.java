@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.cache.aerospike.ttl;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+public class AdaptiveTtlPolicyTest {
+
+    @Test
+    public void timeToLive_scaledByFrequencyAndLoadTime() {
+        AdaptiveTtlPolicy policy = new AdaptiveTtlPolicy(60, 3600, 4, 1000);
+        assertThat(policy.timeToLive("cold", 600), is(60));
+
+        for (int i = 0; i < 4; i++) {
+            policy.recordAccess("hot");
+        }
+        assertThat(policy.timeToLive("hot", 600), is(3600));
+
+        policy.recordLoad("hot", 0);
+        assertThat(policy.timeToLive("hot", 600), is(1830));
+
+        policy.recordLoad("hot", 5000);
+        assertThat(policy.timeToLive("hot", 600), is(3600));
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.compression;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import us.swcraft.springframework.store.StoreCompression;
+import us.swcraft.springframework.store.serialization.KryoSerializer;
+
+public class AdaptiveCompressorTest {
+
+    private final byte[] text = ("Vestibulum ut consectetur orci. Nullam pulvinar dui quis scelerisque suscipit. "
+            + "Vestibulum ut consectetur orci. Nullam pulvinar dui quis scelerisque suscipit.").getBytes();
+
+    @Test
+    public void smallValue_storedRaw() throws IOException {
+        AdaptiveCompressor compressor = new AdaptiveCompressor(Compressors.forType(StoreCompression.LZ4), 1024);
+
+        byte[] compressed = compressor.compress(String.class, text, 0, text.length);
+
+        assertThat(compressed.length, is(text.length + 5));
+        assertThat(Arrays.equals(compressor.decompress(compressed, 0, compressed.length), text), is(true));
+        assertThat(compressor.getCompressionRatios().isEmpty(), is(true));
+    }
+
+    @Test
+    public void compressibleValue_compressed() throws IOException {
+        AdaptiveCompressor compressor = new AdaptiveCompressor(Compressors.forType(StoreCompression.LZ4), 64);
+
+        byte[] compressed = compressor.compress(String.class, text, 0, text.length);
+
+        assertThat(compressed.length < text.length, is(true));
+        assertThat(Arrays.equals(compressor.decompress(compressed, 0, compressed.length), text), is(true));
+        assertThat(compressor.getCompressionRatios().get(String.class.getName()) < 0.9, is(true));
+    }
+
+    @Test
+    public void incompressibleClass_sampledOnly() throws IOException {
+        CountingCompressor counting = new CountingCompressor();
+        AdaptiveCompressor compressor = new AdaptiveCompressor(counting, 64);
+        byte[] random = new byte[512];
+        new Random(1).nextBytes(random);
+
+        for (int i = 0; i < 16 + 640; i++) {
+            byte[] compressed = compressor.compress(byte[].class, random, 0, random.length);
+            assertThat(Arrays.equals(compressor.decompress(compressed, 0, compressed.length), random), is(true));
+        }
+
+        assertThat(counting.calls, is(16 + 10));
+        assertThat(compressor.getCompressionRatios().get(byte[].class.getName()) > 1.0, is(true));
+    }
+
+    @Test
+    public void legacyLz4Value_decompressed() throws IOException {
+        byte[] legacy = Compressors.forType(StoreCompression.LZ4).compress(text, 0, text.length);
+        AdaptiveCompressor compressor = new AdaptiveCompressor(Compressors.forType(StoreCompression.LZ4), 1024);
+
+        assertThat(legacy[0], is((byte) 0));
+        assertThat(Arrays.equals(compressor.decompress(legacy, 0, legacy.length), text), is(true));
+    }
+
+    @Test
+    public void legacySnappyValues_decompressed() throws IOException {
+        byte[] block = Compressors.forType(StoreCompression.SNAPPY).compress(text, 0, text.length);
+        byte[] framed = new SnappyFramedCompressor().compress(text, 0, text.length);
+        AdaptiveCompressor compressor = new AdaptiveCompressor(Compressors.forType(StoreCompression.SNAPPY), 1024);
+
+        assertThat(framed[0], is((byte) 0xFF));
+        assertThat(Arrays.equals(compressor.decompress(block, 0, block.length), text), is(true));
+        assertThat(Arrays.equals(compressor.decompress(framed, 0, framed.length), text), is(true));
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void serializer_adaptiveCompression() {
+        KryoSerializer<HashMap> serializer = new KryoSerializer<>(StoreCompression.SNAPPY);
+        serializer.setCompressor(new AdaptiveCompressor(Compressors.forType(StoreCompression.SNAPPY), 64));
+        HashMap<String, String> small = new HashMap<>();
+        small.put("A", "B");
+        HashMap<String, String> large = new HashMap<>();
+        large.put("A", new String(text));
+
+        assertThat(serializer.deserialize(serializer.serialize(small), HashMap.class), is(small));
+        assertThat(serializer.deserialize(serializer.serialize(large), HashMap.class), is(large));
+    }
+
+    private static class CountingCompressor extends Lz4Compressor {
+        int calls;
+
+        @Override
+        public byte[] compress(final byte[] bytes, final int offset, final int length) {
+            calls++;
+            return super.compress(bytes, offset, length);
+        }
+    }
+
+}
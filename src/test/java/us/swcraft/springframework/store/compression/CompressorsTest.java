@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.compression;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import us.swcraft.springframework.store.StoreCompression;
+
+public class CompressorsTest {
+
+    private final byte[] value = ("Vestibulum ut consectetur orci. Nullam pulvinar dui quis scelerisque suscipit. "
+            + "Vestibulum ut consectetur orci. Nullam pulvinar dui quis scelerisque suscipit.").getBytes();
+
+    @Test
+    public void compressAndDecompress() throws IOException {
+        for (StoreCompression compressionType : StoreCompression.values()) {
+            Compressor compressor = Compressors.forType(compressionType);
+            byte[] padded = new byte[value.length + 8];
+            System.arraycopy(value, 0, padded, 4, value.length);
+
+            byte[] compressed = compressor.compress(padded, 4, value.length);
+            byte[] framed = new byte[compressed.length + 2];
+            System.arraycopy(compressed, 0, framed, 1, compressed.length);
+
+            assertThat(compressionType.name(), Arrays.equals(compressor.decompress(framed, 1, compressed.length), value),
+                    is(true));
+        }
+    }
+
+    @Test
+    public void snappy_readsFramedFormat() throws IOException {
+        Compressor snappy = Compressors.forType(StoreCompression.SNAPPY);
+        byte[] framed = new SnappyFramedCompressor().compress(value, 0, value.length);
+        byte[] block = snappy.compress(value, 0, value.length);
+
+        assertThat(block.length < framed.length, is(true));
+        assertThat(Arrays.equals(snappy.decompress(framed, 0, framed.length), value), is(true));
+        assertThat(Arrays.equals(snappy.decompress(block, 0, block.length), value), is(true));
+    }
+
+    @Test
+    public void lz4_smallerThanValue() throws IOException {
+        assertThat(Compressors.forType(StoreCompression.LZ4).compress(value, 0, value.length).length < value.length,
+                is(true));
+    }
+
+    @Test
+    public void lz4_malformedBlock() {
+        byte[] compressed = new Lz4Compressor().compress(value, 0, value.length);
+        compressed[0] = 0x7F;
+
+        Assertions.assertThrows(IOException.class, () -> new Lz4Compressor().decompress(compressed, 0,
+                compressed.length));
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.serialiization;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import us.swcraft.springframework.store.StoreCompression;
+import us.swcraft.springframework.store.serialization.CodecSerializer;
+
+public class CodecSerializerTest {
+
+    @Test
+    public void serializeAndDeserialize_pojo() {
+        CodecSerializer<Order> serializer = new CodecSerializer<>();
+        Order order = order();
+
+        byte[] marshalled = serializer.serialize(order);
+        Order result = serializer.deserialize(marshalled, Order.class);
+
+        assertThat(result, notNullValue());
+        assertThat(result.id, is(42L));
+        assertThat(result.quantity, is(7));
+        assertThat(result.price, is(9.5d));
+        assertThat(result.paid, is(true));
+        assertThat(result.grade, is('A'));
+        assertThat(result.customer, is("Vestibulum"));
+        assertThat(result.note, nullValue());
+        assertThat(result.discount, is(3));
+        assertThat(result.address.city, is("Nullam"));
+        assertThat(result.tags, is(Arrays.asList("a", "b")));
+        assertThat(result.tagCount, is(2));
+    }
+
+    @Test
+    public void serializeAndDeserializeCompressionSnappy_pojo() {
+        CodecSerializer<Order> serializer = new CodecSerializer<>(StoreCompression.SNAPPY);
+
+        Order result = serializer.deserialize(serializer.serialize(order()), Order.class);
+
+        assertThat(result.customer, is("Vestibulum"));
+        assertThat(result.address.city, is("Nullam"));
+    }
+
+    @Test
+    public void deserializeRange() {
+        CodecSerializer<Order> serializer = new CodecSerializer<>();
+        byte[] marshalled = serializer.serialize(order());
+        byte[] padded = new byte[marshalled.length + 8];
+        System.arraycopy(marshalled, 0, padded, 4, marshalled.length);
+
+        Order result = serializer.deserialize(padded, 4, marshalled.length, Order.class);
+
+        assertThat(result.id, is(42L));
+    }
+
+    @Test
+    public void serializeAndDeserialize_platformClass() {
+        CodecSerializer<ArrayList> serializer = new CodecSerializer<>();
+        ArrayList<String> list = new ArrayList<>(Arrays.asList("a", "b"));
+
+        assertThat(serializer.deserialize(serializer.serialize(list), ArrayList.class), is(list));
+    }
+
+    @Test
+    public void serializeAndDeserialize_cycle() {
+        CodecSerializer<Node> serializer = new CodecSerializer<>();
+        Node node = new Node();
+        node.name = "loop";
+        node.next = node;
+
+        Node result = serializer.deserialize(serializer.serialize(node), Node.class);
+
+        assertThat(result.name, is("loop"));
+        assertThat(result.next == result, is(true));
+    }
+
+    @Test
+    public void serializeAndDeserialize_sharedReferences() {
+        CodecSerializer<Pair> serializer = new CodecSerializer<>();
+        Pair pair = new Pair();
+        pair.left = new Address();
+        pair.right = pair.left;
+        pair.tags = new ArrayList<>(Arrays.asList("a"));
+        pair.sameTags = pair.tags;
+
+        Pair result = serializer.deserialize(serializer.serialize(pair), Pair.class);
+
+        assertThat(result.left == result.right, is(true));
+        assertThat(result.tags == result.sameTags, is(true));
+    }
+
+    @Test
+    public void serializeAndDeserialize_sharedGraph() {
+        CodecSerializer<Pair> serializer = new CodecSerializer<>();
+        Pair head = new Pair();
+        Pair node = head;
+        for (int i = 0; i < 24; i++) {
+            Pair next = new Pair();
+            node.left = next;
+            node.right = next;
+            node = next;
+        }
+
+        byte[] marshalled = serializer.serialize(head);
+        Pair result = serializer.deserialize(marshalled, Pair.class);
+
+        assertThat(marshalled.length < 4096, is(true));
+        for (int i = 0; i < 24; i++) {
+            assertThat(result.left == result.right, is(true));
+            result = (Pair) result.left;
+        }
+    }
+
+    @Test
+    public void registeredClasses() {
+        CodecSerializer<Order> plain = new CodecSerializer<>();
+        CodecSerializer<Order> registered = new CodecSerializer<>();
+        registered.registerClasses(Order.class, Address.class);
+
+        byte[] marshalled = registered.serialize(order());
+
+        assertThat(marshalled.length < plain.serialize(order()).length, is(true));
+        assertThat(registered.deserialize(marshalled, Order.class).address.city, is("Nullam"));
+    }
+
+    private static Order order() {
+        Order order = new Order();
+        order.id = 42L;
+        order.quantity = 7;
+        order.price = 9.5d;
+        order.paid = true;
+        order.grade = 'A';
+        order.customer = "Vestibulum";
+        order.discount = 3;
+        order.address = new Address();
+        order.address.city = "Nullam";
+        order.tags = new ArrayList<>(Arrays.asList("a", "b"));
+        order.tagCount = 2;
+        return order;
+    }
+
+    static class Base {
+        int tagCount;
+    }
+
+    static class Order extends Base {
+        long id;
+        int quantity;
+        double price;
+        boolean paid;
+        char grade;
+        String customer;
+        String note;
+        Integer discount;
+        Address address;
+        List<String> tags;
+        transient Object cached = new Object();
+    }
+
+    static class Address {
+        private final String country = "US";
+        String city;
+    }
+
+    static class Pair {
+        Object left;
+        Object right;
+        List<String> tags;
+        List<String> sameTags;
+    }
+
+    static class Node {
+        String name;
+        Node next;
+    }
+
+}
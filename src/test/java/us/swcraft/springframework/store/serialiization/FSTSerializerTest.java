@@ -20,7 +20,9 @@ import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -92,6 +94,30 @@ public class FSTSerializerTest {
 
     }
 
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Test
+    public void serializeAndDeserializeCompressionLz4_map() throws IOException {
+        HashMap<String, Object> m = new HashMap<>();
+        m.put("A1", "Vestibulum ut consectetur orci. Nullam pulvinar dui quis scelerisque suscipit. Integer in nisl a orci imperdiet posuere.");
+        m.put("A2", "Vestibulum ut consectetur orci. Nullam pulvinar dui quis scelerisque suscipit. Integer in nisl a orci imperdiet posuere.");
+        m.put("A3", "Vestibulum ut consectetur orci. Nullam pulvinar dui quis scelerisque suscipit. Integer in nisl a orci imperdiet posuere.");
+        m.put("A4", "Vestibulum ut consectetur orci. Nullam pulvinar dui quis scelerisque suscipit. Integer in nisl a orci imperdiet posuere.");
+
+
+        FSTSerializer<HashMap> converter = new FSTSerializer<>(StoreCompression.LZ4);
+
+        byte[] marshalled = converter.serialize(m);
+        assertThat(marshalled, notNullValue());
+        assertThat(marshalled.length > 0, is(true));
+        log.debug("Result size: {}", marshalled.length);
+
+        Map<String, Object> result = converter.deserialize(marshalled, HashMap.class);
+
+        assertThat(result, notNullValue());
+        assertThat(result.size(), is(4));
+
+    }
+
 
     @Test
     public void serializeAndDeserializeCompressionNone_String() throws IOException {
@@ -107,4 +133,33 @@ public class FSTSerializerTest {
         assertThat(result, notNullValue());
         assertThat(result, is(token));
     }
+
+    @Test
+    public void deserializeRange() throws IOException {
+        String token = "Vestibulum ut consectetur orci.";
+        for (StoreCompression compression : StoreCompression.values()) {
+            FSTSerializer<String> converter = new FSTSerializer<>(compression);
+            byte[] marshalled = converter.serialize(token);
+            byte[] framed = new byte[marshalled.length + 8];
+            System.arraycopy(marshalled, 0, framed, 3, marshalled.length);
+
+            assertThat(converter.deserialize(framed, 3, marshalled.length, String.class), is(token));
+            ByteBuffer buffer = ByteBuffer.wrap(framed, 3, marshalled.length);
+            assertThat(converter.deserialize(buffer.slice(), String.class), is(token));
+        }
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Test
+    public void serializeAndDeserialize_registeredClasses() throws IOException {
+        HashMap<String, Object> m = new HashMap<>();
+        m.put("A1", new Date(1));
+        FSTSerializer<HashMap> plain = new FSTSerializer<>(StoreCompression.NONE);
+        FSTSerializer<HashMap> registered = new FSTSerializer<>(StoreCompression.NONE);
+        registered.registerClasses(HashMap.class, Date.class);
+
+        byte[] marshalled = registered.serialize(m);
+        assertThat(marshalled.length <= plain.serialize(m).length, is(true));
+        assertThat(registered.deserialize(marshalled, HashMap.class), is(m));
+    }
 }
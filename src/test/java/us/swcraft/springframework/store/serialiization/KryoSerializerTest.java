@@ -20,6 +20,7 @@ import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.HashMap;
 
@@ -29,6 +30,7 @@ import org.slf4j.LoggerFactory;
 
 import us.swcraft.springframework.store.StoreCompression;
 import us.swcraft.springframework.store.serialization.KryoSerializer;
+import us.swcraft.springframework.store.serialization.KryoUnsafeSerializer;
 
 public class KryoSerializerTest {
 
@@ -94,6 +96,32 @@ public class KryoSerializerTest {
 
     }
 
+    @Test
+    public void serializeAndDeserializeCompressionLz4_map() throws IOException {
+        HashMap<String, Object> m = new HashMap<>();
+        m.put("A1",
+                "Vestibulum ut consectetur orci. Nullam pulvinar dui quis scelerisque suscipit. Integer in nisl a orci imperdiet posuere.");
+        m.put("A2",
+                "Vestibulum ut consectetur orci. Nullam pulvinar dui quis scelerisque suscipit. Integer in nisl a orci imperdiet posuere.");
+        m.put("A3",
+                "Vestibulum ut consectetur orci. Nullam pulvinar dui quis scelerisque suscipit. Integer in nisl a orci imperdiet posuere.");
+        m.put("A4",
+                "Vestibulum ut consectetur orci. Nullam pulvinar dui quis scelerisque suscipit. Integer in nisl a orci imperdiet posuere.");
+
+        KryoSerializer<HashMap> converter = new KryoSerializer<>(StoreCompression.LZ4);
+
+        byte[] marshalled = converter.serialize(m);
+        assertThat(marshalled, notNullValue());
+        assertThat(marshalled.length > 0, is(true));
+        log.debug("Result size: {}", marshalled.length);
+
+        HashMap<String, Object> result = converter.deserialize(marshalled, HashMap.class);
+
+        assertThat(result, notNullValue());
+        assertThat(result.size(), is(4));
+
+    }
+
     @Test
     public void serializeAndDeserializeCompressionNone_String() throws IOException {
         String token = "Vestibulum ut consectetur orci. Nullam pulvinar dui quis scelerisque suscipit. Integer in nisl a orci imperdiet posuere.";
@@ -108,4 +136,43 @@ public class KryoSerializerTest {
         assertThat(result, notNullValue());
         assertThat(result, is(token));
     }
+
+    @Test
+    public void deserializeRange() throws IOException {
+        String token = "Vestibulum ut consectetur orci.";
+        for (StoreCompression compression : StoreCompression.values()) {
+            KryoSerializer<String> converter = new KryoSerializer<>(compression);
+            byte[] marshalled = converter.serialize(token);
+            byte[] framed = new byte[marshalled.length + 8];
+            System.arraycopy(marshalled, 0, framed, 3, marshalled.length);
+
+            assertThat(converter.deserialize(framed, 3, marshalled.length, String.class), is(token));
+            ByteBuffer buffer = ByteBuffer.wrap(framed, 3, marshalled.length);
+            assertThat(converter.deserialize(buffer.slice(), String.class), is(token));
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    @Test
+    public void serializeAndDeserializeUnsafe_map() throws IOException {
+        HashMap<String, Object> m = new HashMap<>();
+        m.put("A1", "Vestibulum ut consectetur orci.");
+        m.put("A2", 42L);
+        for (StoreCompression compression : StoreCompression.values()) {
+            KryoSerializer<HashMap> converter = new KryoUnsafeSerializer<>(compression);
+            HashMap<String, Object> result = converter.deserialize(converter.serialize(m), HashMap.class);
+            assertThat(result, is(m));
+        }
+    }
+
+    @Test
+    public void pool_reusesInstances() throws IOException {
+        KryoSerializer<String> converter = new KryoSerializer<>(StoreCompression.NONE);
+        for (int i = 0; i < 10; i++) {
+            converter.deserialize(converter.serialize("Vestibulum"), String.class);
+        }
+        assertThat(converter.getPool().getMisses(), is(1L));
+        assertThat(converter.getPool().getHits(), is(19L));
+        assertThat(converter.getPool().getSize(), is(1));
+    }
 }
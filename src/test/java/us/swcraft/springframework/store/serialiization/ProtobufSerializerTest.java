@@ -0,0 +1,76 @@
+/*
+ * Copyright 2015 the original author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.swcraft.springframework.store.serialiization;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import us.swcraft.springframework.store.StoreCompression;
+import us.swcraft.springframework.store.serialization.ProtobufSerializer;
+
+import com.google.protobuf.DescriptorProtos.FileDescriptorProto;
+
+public class ProtobufSerializerTest {
+
+    private final FileDescriptorProto message = FileDescriptorProto.newBuilder()
+            .setName("cache.proto")
+            .setPackage("us.swcraft.cache")
+            .addDependency("google/protobuf/timestamp.proto")
+            .build();
+
+    @Test
+    public void serializeAndDeserialize_message() {
+        ProtobufSerializer<FileDescriptorProto> serializer = new ProtobufSerializer<>();
+
+        byte[] marshalled = serializer.serialize(message);
+
+        assertThat(marshalled.length, is(message.toByteArray().length + 1));
+        assertThat(serializer.deserialize(marshalled, FileDescriptorProto.class), is(message));
+    }
+
+    @Test
+    public void serializeAndDeserializeCompressionSnappy_message() {
+        ProtobufSerializer<FileDescriptorProto> serializer = new ProtobufSerializer<>(StoreCompression.SNAPPY);
+
+        assertThat(serializer.deserialize(serializer.serialize(message), FileDescriptorProto.class), is(message));
+    }
+
+    @Test
+    public void deserializeRange() {
+        ProtobufSerializer<FileDescriptorProto> serializer = new ProtobufSerializer<>();
+        byte[] marshalled = serializer.serialize(message);
+        byte[] padded = new byte[marshalled.length + 8];
+        System.arraycopy(marshalled, 0, padded, 4, marshalled.length);
+
+        assertThat(serializer.deserialize(padded, 4, marshalled.length, FileDescriptorProto.class), is(message));
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    @Test
+    public void serializeAndDeserialize_delegate() {
+        ProtobufSerializer<HashMap> serializer = new ProtobufSerializer<>(StoreCompression.SNAPPY);
+        Map<String, Object> map = new HashMap<>();
+        map.put("A1", "Vestibulum ut consectetur orci.");
+
+        assertThat(serializer.deserialize(serializer.serialize((HashMap) map), HashMap.class), is(map));
+    }
+
+}